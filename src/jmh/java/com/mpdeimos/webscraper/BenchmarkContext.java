@@ -0,0 +1,40 @@
+package com.mpdeimos.webscraper;
+
+import java.lang.reflect.Field;
+
+import org.jsoup.nodes.Element;
+
+/**
+ * Fixed {@link ScraperContext} for benchmarking single processors.
+ *
+ * @author mpdeimos
+ */
+public class BenchmarkContext extends ScraperContext
+{
+	/** Constructor. */
+	public BenchmarkContext(Field field, Element element, String text)
+	{
+		this.targetField = field;
+		this.targetType = field.getType();
+		this.rootElement = element;
+		this.sourceElement = element;
+		this.sourceText = text;
+	}
+
+	/** @return A context for the field with the given name of a class. */
+	public static BenchmarkContext of(
+			Class<?> clazz,
+			String field,
+			Element element,
+			String text)
+	{
+		try
+		{
+			return new BenchmarkContext(clazz.getField(field), element, text);
+		}
+		catch (NoSuchFieldException e)
+		{
+			throw new ScraperError("No field " + field, e); //$NON-NLS-1$
+		}
+	}
+}
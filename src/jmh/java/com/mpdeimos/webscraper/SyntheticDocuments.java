@@ -0,0 +1,61 @@
+package com.mpdeimos.webscraper;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * Creates synthetic product list documents for benchmarking.
+ *
+ * @author mpdeimos
+ */
+public class SyntheticDocuments
+{
+	/** @return The HTML of a product list with the given amount of rows. */
+	public static String productListHtml(int rows)
+	{
+		StringBuilder html = new StringBuilder();
+		html.append("<html><head><title>Products</title></head><body>"); //$NON-NLS-1$
+		html.append("<h1>Product list</h1><ul id='products'>"); //$NON-NLS-1$
+		for (int i = 0; i < rows; i++)
+		{
+			html.append("<li class='product'>"); //$NON-NLS-1$
+			html.append("<span class='name'>\u00a0Product  ").append(i).append(" </span>"); //$NON-NLS-1$ //$NON-NLS-2$
+			html.append("<span class='price'>EUR ").append(i % 1000).append('.').append(i % 100).append("</span>"); //$NON-NLS-1$ //$NON-NLS-2$
+			html.append("<span class='quantity'>").append(i).append("</span>"); //$NON-NLS-1$ //$NON-NLS-2$
+			html.append("<a href='/product/").append(i).append("'>details</a>"); //$NON-NLS-1$ //$NON-NLS-2$
+			html.append("</li>"); //$NON-NLS-1$
+		}
+		html.append("</ul></body></html>"); //$NON-NLS-1$
+		return html.toString();
+	}
+
+	/** @return A parsed product list with the given amount of rows. */
+	public static Document productList(int rows)
+	{
+		return Jsoup.parse(productListHtml(rows));
+	}
+
+	/** Scraping target for product lists. */
+	public static class ProductList
+	{
+		/** The page title. */
+		@Scrape("h1")
+		public String title;
+
+		/** The product names. */
+		@Scrape("li.product span.name")
+		public String[] names;
+
+		/** The product prices. */
+		@Scrape(value = "li.product span.price", regex = "EUR (.*)")
+		public double[] prices;
+
+		/** The product quantities. */
+		@Scrape("li.product span.quantity")
+		public int[] quantities;
+
+		/** The product links. */
+		@Scrape(value = "li.product a", attribute = "href")
+		public String[] links;
+	}
+}
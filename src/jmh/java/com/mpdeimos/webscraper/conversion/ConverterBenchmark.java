@@ -0,0 +1,162 @@
+package com.mpdeimos.webscraper.conversion;
+
+import java.util.Date;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.mpdeimos.webscraper.BenchmarkContext;
+import com.mpdeimos.webscraper.Scrape;
+import com.mpdeimos.webscraper.ScraperContext;
+import com.mpdeimos.webscraper.ScraperException;
+
+/**
+ * Benchmarks the conversion of a single value with each {@link Converter}.
+ *
+ * @author mpdeimos
+ */
+@State(Scope.Thread)
+public class ConverterBenchmark
+{
+	/** Context for {@link DefaultConverter}. */
+	private ScraperContext defaultContext;
+
+	/** Context for {@link NumberFormatConverter}. */
+	private ScraperContext numberFormatContext;
+
+	/** Context for {@link DateFormatConverter}. */
+	private ScraperContext dateFormatContext;
+
+	/** Context for {@link ConstructConverter}. */
+	private ScraperContext constructContext;
+
+	/** Context for {@link ChildTextSummarizer}. */
+	private ScraperContext childTextContext;
+
+	/** Context for {@link DeepScrapeConverter}. */
+	private ScraperContext deepScrapeContext;
+
+	/** Sets up the contexts. */
+	@Setup
+	public void setUp()
+	{
+		Element element = Jsoup.parse("<div id='item'><h2>Item</h2>" //$NON-NLS-1$
+				+ "<p>First paragraph</p><span>inline</span>" //$NON-NLS-1$
+				+ "<p class='price'>1,234.5</p><ul><li>a</li><li>b</li></ul>" //$NON-NLS-1$
+				+ "</div>").getElementById("item"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		this.defaultContext = BenchmarkContext.of(Target.class,
+				"number", element, "12345"); //$NON-NLS-1$ //$NON-NLS-2$
+		this.numberFormatContext = BenchmarkContext.of(Target.class,
+				"formattedNumber", element, "1,234.5"); //$NON-NLS-1$ //$NON-NLS-2$
+		this.dateFormatContext = BenchmarkContext.of(Target.class,
+				"date", element, "2016-11-28 20:46"); //$NON-NLS-1$ //$NON-NLS-2$
+		this.constructContext = BenchmarkContext.of(Target.class,
+				"constructed", element, "text"); //$NON-NLS-1$ //$NON-NLS-2$
+		this.childTextContext = BenchmarkContext.of(Target.class,
+				"summary", element, element.text()); //$NON-NLS-1$
+		this.deepScrapeContext = BenchmarkContext.of(Target.class,
+				"nested", element, element.text()); //$NON-NLS-1$
+	}
+
+	/** Benchmarks {@link DefaultConverter}. */
+	@Benchmark
+	public Object defaultConverter() throws ScraperException
+	{
+		return new DefaultConverter().convert(this.defaultContext);
+	}
+
+	/** Benchmarks {@link NumberFormatConverter}. */
+	@Benchmark
+	public Object numberFormatConverter() throws ScraperException
+	{
+		return new NumberFormatConverter().convert(this.numberFormatContext);
+	}
+
+	/** Benchmarks {@link DateFormatConverter}. */
+	@Benchmark
+	public Object dateFormatConverter() throws ScraperException
+	{
+		return new DateFormatConverter().convert(this.dateFormatContext);
+	}
+
+	/** Benchmarks {@link ConstructConverter}. */
+	@Benchmark
+	public Object constructConverter() throws ScraperException
+	{
+		return new ConstructConverter().convert(this.constructContext);
+	}
+
+	/** Benchmarks {@link ChildTextSummarizer}. */
+	@Benchmark
+	public Object childTextSummarizer() throws ScraperException
+	{
+		return new ChildTextSummarizer().convert(this.childTextContext);
+	}
+
+	/** Benchmarks {@link DeepScrapeConverter}. */
+	@Benchmark
+	public Object deepScrapeConverter() throws ScraperException
+	{
+		return new DeepScrapeConverter().convert(this.deepScrapeContext);
+	}
+
+	/** Conversion target. */
+	public static class Target
+	{
+		/** Target of {@link DefaultConverter}. */
+		@Scrape("p")
+		public int number;
+
+		/** Target of {@link NumberFormatConverter}. */
+		@Scrape(value = "p.price", converter = NumberFormatConverter.class)
+		public Number formattedNumber;
+
+		/** Target of {@link DateFormatConverter}. */
+		@Scrape(value = "p", converter = DateFormatConverter.class)
+		@DateFormatConverter.Option("yyyy-MM-dd HH:mm")
+		public Date date;
+
+		/** Target of {@link ConstructConverter}. */
+		@Scrape(value = "p", converter = ConstructConverter.class)
+		public Constructed constructed;
+
+		/** Target of {@link ChildTextSummarizer}. */
+		@Scrape(value = "div", converter = ChildTextSummarizer.class)
+		@ChildTextSummarizer.Option(exclude = "ul")
+		public String summary;
+
+		/** Target of {@link DeepScrapeConverter}. */
+		@Scrape(value = "div", converter = DeepScrapeConverter.class)
+		public Nested nested;
+	}
+
+	/** Object constructed from text. */
+	public static class Constructed
+	{
+		/** The text. */
+		public final String text;
+
+		/** Constructor. */
+		public Constructed(String text)
+		{
+			this.text = text;
+		}
+	}
+
+	/** Deep scraped object. */
+	public static class Nested
+	{
+		/** The heading. */
+		@Scrape("h2")
+		public String heading;
+
+		/** The list items. */
+		@Scrape("li")
+		public String[] items;
+	}
+}
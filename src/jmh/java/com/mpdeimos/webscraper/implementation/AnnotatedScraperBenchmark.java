@@ -0,0 +1,47 @@
+package com.mpdeimos.webscraper.implementation;
+
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.ScraperSource;
+import com.mpdeimos.webscraper.SyntheticDocuments;
+import com.mpdeimos.webscraper.SyntheticDocuments.ProductList;
+
+/**
+ * Benchmarks {@link AnnotatedScraper#scrape()} on small, medium and large
+ * synthetic documents.
+ *
+ * @author mpdeimos
+ */
+@State(Scope.Benchmark)
+public class AnnotatedScraperBenchmark
+{
+	/** The amount of product rows of the document. */
+	@Param({ "10", "1000", "20000" })
+	public int rows;
+
+	/** The scraped source. */
+	private ScraperSource source;
+
+	/** Parses the document. */
+	@Setup
+	public void setUp()
+	{
+		Document document = SyntheticDocuments.productList(this.rows);
+		this.source = ScraperSource.fromElement(document);
+	}
+
+	/** Scrapes the document reflectively. */
+	@Benchmark
+	public ProductList scrape() throws ScraperException
+	{
+		ProductList target = new ProductList();
+		new AnnotatedScraper(this.source, target).scrape();
+		return target;
+	}
+}
@@ -0,0 +1,140 @@
+package com.mpdeimos.webscraper.implementation;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.mpdeimos.webscraper.Scrape;
+import com.mpdeimos.webscraper.ScraperException;
+
+/**
+ * Compares writing scraped data with {@link FieldWriter} against the
+ * reflective {@link Field#set} and {@link Array#set} path.
+ *
+ * @author mpdeimos
+ */
+@State(Scope.Thread)
+public class FieldWriterBenchmark
+{
+	/** The amount of array elements to write. */
+	private static final int ARRAY_SIZE = 1000;
+
+	/** The target object. */
+	private final Item item = new Item();
+
+	/** The reference field. */
+	private Field text;
+
+	/** The primitive field. */
+	private Field number;
+
+	/** The primitive array field. */
+	private Field numbers;
+
+	/** Writer of the reference field. */
+	private FieldWriter textWriter;
+
+	/** Writer of the primitive field. */
+	private FieldWriter numberWriter;
+
+	/** Writer of the primitive array field. */
+	private FieldWriter numbersWriter;
+
+	/** The boxed value written to the primitive field. */
+	private final Object boxed = Integer.valueOf(42);
+
+	/** The boxed values written to the primitive array field. */
+	private final List<Object> values = new ArrayList<Object>();
+
+	/** Sets up fields and writers. */
+	@Setup
+	public void setUp() throws NoSuchFieldException
+	{
+		this.text = Item.class.getField("text"); //$NON-NLS-1$
+		this.number = Item.class.getField("number"); //$NON-NLS-1$
+		this.numbers = Item.class.getField("numbers"); //$NON-NLS-1$
+		this.textWriter = new FieldWriter(this.text);
+		this.numberWriter = new FieldWriter(this.number);
+		this.numbersWriter = new FieldWriter(this.numbers);
+
+		for (int i = 0; i < ARRAY_SIZE; i++)
+		{
+			this.values.add(Integer.valueOf(i));
+		}
+	}
+
+	/** Writes a reference field reflectively. */
+	@Benchmark
+	public Item reflectiveReference() throws IllegalAccessException
+	{
+		this.text.set(this.item, "text"); //$NON-NLS-1$
+		return this.item;
+	}
+
+	/** Writes a reference field with a {@link FieldWriter}. */
+	@Benchmark
+	public Item writerReference() throws ScraperException
+	{
+		this.textWriter.set(this.item, "text"); //$NON-NLS-1$
+		return this.item;
+	}
+
+	/** Writes a primitive field reflectively. */
+	@Benchmark
+	public Item reflectivePrimitive() throws IllegalAccessException
+	{
+		this.number.set(this.item, this.boxed);
+		return this.item;
+	}
+
+	/** Writes a primitive field with a {@link FieldWriter}. */
+	@Benchmark
+	public Item writerPrimitive() throws ScraperException
+	{
+		this.numberWriter.set(this.item, this.boxed);
+		return this.item;
+	}
+
+	/** Fills a primitive array reflectively. */
+	@Benchmark
+	public Object reflectiveArray()
+	{
+		Object array = Array.newInstance(
+				this.numbers.getType().getComponentType(),
+				this.values.size());
+		for (int i = 0; i < this.values.size(); i++)
+		{
+			Array.set(array, i, this.values.get(i));
+		}
+		return array;
+	}
+
+	/** Fills a primitive array with a {@link FieldWriter}. */
+	@Benchmark
+	public Object writerArray() throws ScraperException
+	{
+		return this.numbersWriter.newArray(this.values);
+	}
+
+	/** Benchmarked target object. */
+	public static class Item
+	{
+		/** Reference field. */
+		@Scrape("a")
+		public String text;
+
+		/** Primitive field. */
+		@Scrape("b")
+		public int number;
+
+		/** Primitive array field. */
+		@Scrape("c")
+		public int[] numbers;
+	}
+}
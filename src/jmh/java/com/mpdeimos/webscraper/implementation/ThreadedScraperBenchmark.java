@@ -0,0 +1,86 @@
+package com.mpdeimos.webscraper.implementation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.mpdeimos.webscraper.Scraper;
+import com.mpdeimos.webscraper.Scraper.ScraperBuilder;
+import com.mpdeimos.webscraper.ScraperEngine;
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.ScraperSource;
+import com.mpdeimos.webscraper.SyntheticDocuments;
+import com.mpdeimos.webscraper.SyntheticDocuments.ProductList;
+
+/**
+ * Benchmarks {@link ThreadedScraper} scraping a batch of documents at
+ * different parallelism levels.
+ *
+ * @author mpdeimos
+ */
+@State(Scope.Benchmark)
+public class ThreadedScraperBenchmark
+{
+	/** The amount of scraped documents per batch. */
+	private static final int BATCH_SIZE = 256;
+
+	/** The amount of scraper threads. */
+	@Param({ "1", "2", "4", "8" })
+	public int parallelism;
+
+	/** The scraped sources. */
+	private final ScraperSource[] sources = new ScraperSource[BATCH_SIZE];
+
+	/** The engine for scraping on a persistent thread pool. */
+	private ScraperEngine engine;
+
+	/** Parses the documents and starts the engine. */
+	@Setup
+	public void setUp()
+	{
+		this.engine = new ScraperEngine(this.parallelism);
+
+		for (int i = 0; i < BATCH_SIZE; i++)
+		{
+			this.sources[i] = ScraperSource.fromElement(SyntheticDocuments.productList(100));
+		}
+	}
+
+	/** Stops the engine. */
+	@TearDown
+	public void tearDown()
+	{
+		this.engine.close();
+	}
+
+	/** Scrapes the batch of documents with a new thread pool. */
+	@Benchmark
+	public ProductList[] scrape() throws ScraperException
+	{
+		return scrape(Scraper.builder().setParallelism(this.parallelism));
+	}
+
+	/** Scrapes the batch of documents with the engine. */
+	@Benchmark
+	public ProductList[] scrapeWithEngine() throws ScraperException
+	{
+		return scrape(this.engine.builder());
+	}
+
+	/** Scrapes the batch of documents with the given builder. */
+	private ProductList[] scrape(ScraperBuilder builder)
+			throws ScraperException
+	{
+		ProductList[] targets = new ProductList[BATCH_SIZE];
+		for (int i = 0; i < BATCH_SIZE; i++)
+		{
+			targets[i] = new ProductList();
+			builder.add(this.sources[i], targets[i]);
+		}
+		builder.build().scrape();
+		return targets;
+	}
+}
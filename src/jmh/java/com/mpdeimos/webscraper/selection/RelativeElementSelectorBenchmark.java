@@ -0,0 +1,70 @@
+package com.mpdeimos.webscraper.selection;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.mpdeimos.webscraper.BenchmarkContext;
+import com.mpdeimos.webscraper.Scrape;
+import com.mpdeimos.webscraper.ScraperContext;
+import com.mpdeimos.webscraper.SyntheticDocuments;
+
+/**
+ * Benchmarks {@link RelativeElementSelector}.
+ *
+ * @author mpdeimos
+ */
+@State(Scope.Thread)
+public class RelativeElementSelectorBenchmark
+{
+	/** The selector. */
+	private final RelativeElementSelector selector = new RelativeElementSelector();
+
+	/** Context without selector option. */
+	private ScraperContext plainContext;
+
+	/** Context with parent and sibling option. */
+	private ScraperContext relativeContext;
+
+	/** Sets up the contexts. */
+	@Setup
+	public void setUp()
+	{
+		Document document = SyntheticDocuments.productList(100);
+		Element element = document.select("li.product span.price").get(50); //$NON-NLS-1$
+		this.plainContext = BenchmarkContext.of(Target.class,
+				"plain", element, element.text()); //$NON-NLS-1$
+		this.relativeContext = BenchmarkContext.of(Target.class,
+				"relative", element, element.text()); //$NON-NLS-1$
+	}
+
+	/** Selects without option. */
+	@Benchmark
+	public Element plain()
+	{
+		return this.selector.select(this.plainContext);
+	}
+
+	/** Selects the 3rd sibling of the parent. */
+	@Benchmark
+	public Element relative()
+	{
+		return this.selector.select(this.relativeContext);
+	}
+
+	/** Selection target. */
+	public static class Target
+	{
+		/** Field without option. */
+		@Scrape(value = "span", root = RelativeElementSelector.class)
+		public String plain;
+
+		/** Field with option. */
+		@Scrape(value = "span", root = RelativeElementSelector.class)
+		@RelativeElementSelector.Option(parent = 1, sibling = 3)
+		public String relative;
+	}
+}
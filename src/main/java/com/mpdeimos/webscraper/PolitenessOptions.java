@@ -0,0 +1,35 @@
+package com.mpdeimos.webscraper;
+
+/**
+ * Options for scraping URL sources politely, i.e. limiting the load on each
+ * host and the overall request rate. Scrapes of a host exceeding its limits
+ * are deferred and the threads scrape other hosts meanwhile.
+ * 
+ * @author mpdeimos
+ */
+public class PolitenessOptions
+{
+	/**
+	 * The maximum amount of concurrent scrapes of the same host. Default:
+	 * {@value}
+	 */
+	public int maxConnectionsPerHost = 2;
+
+	/**
+	 * The minimum delay in milliseconds between starting two scrapes of the
+	 * same host. Default: {@value}
+	 */
+	public long minDelayMillis = 0;
+
+	/**
+	 * The maximum amount of scrapes started per second for all hosts or
+	 * <code>0</code> for no limit. Default: {@value}
+	 */
+	public double requestsPerSecond = 0;
+
+	/**
+	 * The amount of scrapes that may be started at once if the rate has not
+	 * been exhausted before. Default: {@value}
+	 */
+	public int burst = 1;
+}
@@ -99,6 +99,14 @@ public @interface Scrape
 	 */
 	boolean ownText() default false;
 
+	/**
+	 * Flag specifying if the elements of an {@link Array} field are converted
+	 * in parallel chunks, e.g. for large arrays with expensive validators or
+	 * converters. The order of the elements is preserved. Has no effect on
+	 * single value fields. Default: <code>false</code>
+	 */
+	boolean parallel() default false;
+
 	/**
 	 * The validation processor that is used for validating values. Default is
 	 * to always pass.
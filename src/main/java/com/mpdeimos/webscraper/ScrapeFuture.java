@@ -0,0 +1,63 @@
+package com.mpdeimos.webscraper;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Future of an asynchronous scrape, which completes when all targets are
+ * scraped. The futures of the single targets complete with the scraped target
+ * as soon as it has been scraped, so downstream work can be pipelined while
+ * other targets are still scraped.
+ * <p>
+ * Failures of a target complete its future and the future of the whole
+ * scrape exceptionally, the latter once all targets are finished.
+ * 
+ * @author mpdeimos
+ */
+public class ScrapeFuture extends CompletableFuture<Void>
+{
+	/** The futures of the scraped targets. */
+	private final List<CompletableFuture<Object>> targets;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param batch
+	 *            The future of the whole scrape this future completes with.
+	 * @param targets
+	 *            The futures of the scraped targets in the order they were
+	 *            added.
+	 */
+	public ScrapeFuture(
+			CompletableFuture<Void> batch,
+			List<CompletableFuture<Object>> targets)
+	{
+		this.targets = Collections.unmodifiableList(targets);
+		batch.whenComplete(new BiConsumer<Void, Throwable>()
+		{
+			@Override
+			public void accept(Void result, Throwable failure)
+			{
+				if (failure == null)
+				{
+					complete(result);
+				}
+				else
+				{
+					completeExceptionally(failure);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return The futures of the scraped targets in the order they were added
+	 *         to the {@link Scraper.ScraperBuilder}.
+	 */
+	public List<CompletableFuture<Object>> getTargets()
+	{
+		return this.targets;
+	}
+}
@@ -0,0 +1,136 @@
+package com.mpdeimos.webscraper;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summary of a batch scrape (see {@link Scraper#scrapeBatch()}), which
+ * continues after failing targets. Failed targets can be scraped again by
+ * adding their source and target to a new {@link Scraper.ScraperBuilder}.
+ *
+ * @author mpdeimos
+ */
+public class ScrapeSummary
+{
+	/** The amount of successfully scraped targets. */
+	private final int succeeded;
+
+	/** The failed targets. */
+	private final List<TargetFailure> failures;
+
+	/** The duration of the whole scrape in nanoseconds. */
+	private final long elapsedNanos;
+
+	/** Constructor. */
+	public ScrapeSummary(
+			int succeeded,
+			List<TargetFailure> failures,
+			long elapsedNanos)
+	{
+		this.succeeded = succeeded;
+		this.failures = Collections.unmodifiableList(failures);
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/** @return The amount of successfully scraped targets. */
+	public int getSucceededCount()
+	{
+		return this.succeeded;
+	}
+
+	/** @return The amount of scraped targets, including failed ones. */
+	public int getTotalCount()
+	{
+		return this.succeeded + this.failures.size();
+	}
+
+	/** @return The failed targets in the order they finished. */
+	public List<TargetFailure> getFailures()
+	{
+		return this.failures;
+	}
+
+	/** @return Whether all targets have been scraped successfully. */
+	public boolean isSuccessful()
+	{
+		return this.failures.isEmpty();
+	}
+
+	/** @return The duration of the whole scrape in milliseconds. */
+	public long getElapsedMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString()
+	{
+		return this.succeeded + " of " + getTotalCount() //$NON-NLS-1$
+				+ " targets scraped in " + getElapsedMillis() + " ms"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/** A target whose scrape failed. */
+	public static class TargetFailure
+	{
+		/** The source of the target or <code>null</code> if unknown. */
+		private final ScraperSource source;
+
+		/** The target or <code>null</code> if unknown. */
+		private final Object target;
+
+		/** The failure of the scrape. */
+		private final Throwable cause;
+
+		/**
+		 * The duration of the scrape including nested scrapes in nanoseconds.
+		 */
+		private final long durationNanos;
+
+		/** Constructor. */
+		public TargetFailure(
+				ScraperSource source,
+				Object target,
+				Throwable cause,
+				long durationNanos)
+		{
+			this.source = source;
+			this.target = target;
+			this.cause = cause;
+			this.durationNanos = durationNanos;
+		}
+
+		/** @see #source */
+		public ScraperSource getSource()
+		{
+			return this.source;
+		}
+
+		/** @see #target */
+		public Object getTarget()
+		{
+			return this.target;
+		}
+
+		/**
+		 * @return The failure of the scrape, usually a
+		 *         {@link ScraperException}, or a
+		 *         {@link java.util.concurrent.CancellationException} if the
+		 *         scrape has been cancelled.
+		 */
+		public Throwable getCause()
+		{
+			return this.cause;
+		}
+
+		/**
+		 * @return The duration of the scrape including nested scrapes in
+		 *         milliseconds, or <code>0</code> if the scrape did not start.
+		 */
+		public long getDurationMillis()
+		{
+			return TimeUnit.NANOSECONDS.toMillis(this.durationNanos);
+		}
+	}
+}
@@ -1,9 +1,15 @@
 package com.mpdeimos.webscraper;
 
+import com.mpdeimos.webscraper.ScrapeSummary.TargetFailure;
 import com.mpdeimos.webscraper.ScraperSource.ScraperSourceProvider;
 import com.mpdeimos.webscraper.implementation.ThreadedScraperBuilder;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import org.jsoup.nodes.Element;
 
@@ -21,10 +27,97 @@ public abstract class Scraper
 	 */
 	public abstract void scrape() throws ScraperException;
 
+	/**
+	 * Scrapes the source HTML element to the specified target object without
+	 * blocking the caller, if supported by the implementation. The default
+	 * implementation scrapes synchronously and returns a completed future
+	 * without target futures.
+	 */
+	public ScrapeFuture scrapeAsync()
+	{
+		CompletableFuture<Void> batch = new CompletableFuture<Void>();
+		try
+		{
+			scrape();
+			batch.complete(null);
+		}
+		catch (ScraperException e)
+		{
+			batch.completeExceptionally(e);
+		}
+		catch (RuntimeException e)
+		{
+			batch.completeExceptionally(e);
+		}
+		return new ScrapeFuture(
+				batch,
+				Collections.<CompletableFuture<Object>> emptyList());
+	}
+
+	/**
+	 * Scrapes all targets like {@link #scrape()}, but continues after failing
+	 * targets instead of aborting. Must not be called from within a running
+	 * scrape. The default implementation scrapes synchronously and reports a
+	 * failure without source and target, including runtime exceptions like
+	 * {@link #scrapeAsync()}.
+	 * 
+	 * @return The summary of succeeded and failed targets.
+	 */
+	public ScrapeSummary scrapeBatch() throws ScraperException
+	{
+		long start = System.nanoTime();
+		try
+		{
+			scrape();
+			return new ScrapeSummary(
+					1,
+					Collections.<TargetFailure> emptyList(),
+					System.nanoTime() - start);
+		}
+		catch (ScraperException e)
+		{
+			return failedSummary(e, start);
+		}
+		catch (RuntimeException e)
+		{
+			return failedSummary(e, start);
+		}
+	}
+
+	/**
+	 * @return The summary of a batch started at the given time that failed
+	 *         without source and target.
+	 */
+	private static ScrapeSummary failedSummary(Throwable failure, long start)
+	{
+		long duration = System.nanoTime() - start;
+		return new ScrapeSummary(
+				0,
+				Collections.singletonList(new TargetFailure(
+						null,
+						null,
+						failure,
+						duration)),
+				duration);
+	}
+
+	/**
+	 * @return The metrics of the stages of a staged scraper, e.g. for
+	 *         monitoring queue depths. Default: an empty list.
+	 */
+	public List<StageMetrics> getStageMetrics()
+	{
+		return Collections.emptyList();
+	}
+
 	/**
 	 * Interface for building a {@link Scraper}. Use the methods {@link #add()}
 	 * to add objects to scrape and {@link #build()} to create the
 	 * {@link Scraper}.
+	 * <p>
+	 * Optional features, e.g. lazy targets or execution modes, have default
+	 * implementations throwing {@link UnsupportedOperationException}, so
+	 * existing implementations need not support them.
 	 */
 	public interface ScraperBuilder
 	{
@@ -51,6 +144,43 @@ public abstract class Scraper
 		public ScraperBuilder add(
 				Collection<ScraperSourceProvider> sourceAndTarget);
 
+		/**
+		 * Adds {@link ScraperSourceProvider}s that are pulled lazily while
+		 * scraping, only if less than the maximum amount of targets are in
+		 * flight (see {@link #setMaxInFlight(int)}). Suited for huge batches
+		 * that should not be held in memory at once. Lazily added targets are
+		 * scraped after all other targets. Default: throws
+		 * {@link UnsupportedOperationException}.
+		 */
+		public default ScraperBuilder add(
+				Iterator<? extends ScraperSourceProvider> sourceAndTargets)
+		{
+			throw new UnsupportedOperationException("Lazy targets are not supported"); //$NON-NLS-1$
+		}
+
+		/**
+		 * Adds a stream of {@link ScraperSourceProvider}s that is consumed
+		 * lazily while scraping. Default: adds the iterator of the stream.
+		 * 
+		 * @see #add(Iterator)
+		 */
+		public default ScraperBuilder add(
+				Stream<? extends ScraperSourceProvider> sourceAndTargets)
+		{
+			return add(sourceAndTargets.iterator());
+		}
+
+		/**
+		 * Sets the maximum amount of lazily added targets that are scraped
+		 * concurrently, including their nested scrapes. Default is twice the
+		 * amount of threads. Default: throws
+		 * {@link UnsupportedOperationException}.
+		 */
+		public default ScraperBuilder setMaxInFlight(int maxInFlight)
+		{
+			throw new UnsupportedOperationException("Lazy targets are not supported"); //$NON-NLS-1$
+		}
+
 		/**
 		 * Adds a source and target to the list of scraped objects.
 		 */
@@ -66,6 +196,62 @@ public abstract class Scraper
 		 * to he number of available processors.
 		 */
 		public ScraperBuilder setParallelism(int nThreads);
+
+		/**
+		 * Runs each scrape on its own virtual thread instead of a fixed size
+		 * thread pool, with at most the given amount of scrapes running
+		 * concurrently. Suited for I/O-bound scraping of many slow URLs. On
+		 * Java runtimes without virtual threads, a fixed pool of the given
+		 * amount of platform threads is used. Default: throws
+		 * {@link UnsupportedOperationException}.
+		 */
+		public default ScraperBuilder setVirtualThreads(int maxConcurrency)
+		{
+			throw new UnsupportedOperationException("Virtual threads are not supported"); //$NON-NLS-1$
+		}
+
+		/**
+		 * Runs the scrapes on a work-stealing fork/join pool with the
+		 * configured parallelism. Nested scrapes, e.g. of deep scraped fields
+		 * or scraped {@link ScraperSourceProvider}s, are forked as subtasks
+		 * and joined before the parent field is assigned, while idle threads
+		 * steal pending subtasks of busy ones. Default: throws
+		 * {@link UnsupportedOperationException}.
+		 */
+		public default ScraperBuilder setWorkStealing()
+		{
+			throw new UnsupportedOperationException("Work stealing is not supported"); //$NON-NLS-1$
+		}
+
+		/**
+		 * Scrapes in a pipeline of a fetch stage, which downloads the
+		 * documents, and a bind stage, which parses and binds them. Each stage
+		 * has its own thread pool, so the fetch stage can be sized for I/O and
+		 * the bind stage for the available processors. At most
+		 * <code>queueCapacity</code> fetched documents wait for binding, further
+		 * fetches wait till the bind stage catches up. The stages are
+		 * monitored with {@link Scraper#getStageMetrics()}. Default: throws
+		 * {@link UnsupportedOperationException}.
+		 */
+		public default ScraperBuilder setStages(
+				int fetchParallelism,
+				int bindParallelism,
+				int queueCapacity)
+		{
+			throw new UnsupportedOperationException("Pipeline stages are not supported"); //$NON-NLS-1$
+		}
+
+		/**
+		 * Limits the concurrent scrapes per host and the request rate of
+		 * sources with a host (see {@link ScraperSource#getHost()}). Scrapes
+		 * exceeding the limits are deferred without blocking a thread. Cannot
+		 * be combined with {@link #setWorkStealing()}. Default: throws
+		 * {@link UnsupportedOperationException}.
+		 */
+		public default ScraperBuilder setPoliteness(PolitenessOptions options)
+		{
+			throw new UnsupportedOperationException("Politeness limits are not supported"); //$NON-NLS-1$
+		}
 	}
 
 	/** Creates a new ScraperBuilder */
@@ -1,5 +1,6 @@
 package com.mpdeimos.webscraper;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 
 import org.jsoup.nodes.Element;
@@ -61,4 +62,13 @@ public abstract class ScraperContext
 	{
 		return this.targetField;
 	}
+
+	/**
+	 * @return The option annotation of the given type of the target field or
+	 *         <code>null</code> if the field is not annotated with it.
+	 */
+	public <A extends Annotation> A getOption(Class<A> optionType)
+	{
+		return this.targetField.getAnnotation(optionType);
+	}
 }
@@ -0,0 +1,62 @@
+package com.mpdeimos.webscraper;
+
+import com.mpdeimos.webscraper.Scraper.ScraperBuilder;
+import com.mpdeimos.webscraper.implementation.AsyncExecutor;
+import com.mpdeimos.webscraper.implementation.ThreadedScraperBuilder;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Long-lived scraping engine that owns a persistent thread pool. All
+ * {@link Scraper}s built with {@link #builder()} share the pool, so threads
+ * are not created and torn down for every batch. Each built {@link Scraper}
+ * only waits for its own targets, so concurrent batches are isolated.
+ * <p>
+ * The engine has to be {@link #close() closed} when no longer needed.
+ * 
+ * @author mpdeimos
+ */
+public class ScraperEngine implements Closeable
+{
+	/** The shared thread pool. */
+	private final ExecutorService executor;
+
+	/** Constructor using as many threads as available processors. */
+	public ScraperEngine()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/** Constructor. */
+	public ScraperEngine(int nThreads)
+	{
+		this.executor = AsyncExecutor.newThreadPool(nThreads);
+	}
+
+	/**
+	 * Creates a new ScraperBuilder whose {@link Scraper} runs on the thread
+	 * pool of this engine. The parallelism of the builder is ignored.
+	 * 
+	 * @throws IllegalStateException
+	 *             If the engine has been closed.
+	 */
+	public ScraperBuilder builder()
+	{
+		if (this.executor.isShutdown())
+		{
+			throw new IllegalStateException("Scraper engine is closed"); //$NON-NLS-1$
+		}
+		return new ThreadedScraperBuilder(this.executor);
+	}
+
+	/**
+	 * Shuts down the thread pool of the engine. Already started scrapers are
+	 * completed, but no new scrapers can be built.
+	 */
+	@Override
+	public void close()
+	{
+		this.executor.shutdown();
+	}
+}
@@ -1,11 +1,29 @@
 package com.mpdeimos.webscraper;
 
+import com.mpdeimos.webscraper.fetching.DefaultFetcher;
+import com.mpdeimos.webscraper.fetching.DocumentCache;
+import com.mpdeimos.webscraper.fetching.FetchResponse;
+import com.mpdeimos.webscraper.fetching.Fetcher;
+import com.mpdeimos.webscraper.fetching.RetryPolicy;
+import com.mpdeimos.webscraper.util.DecodingReader;
+
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.ServiceLoader;
 
-import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
 
 /**
  * Class that encapsulates a means to retrieve a scrapable {@link Element}.
@@ -27,11 +45,88 @@ public abstract class ScraperSource
 		 * The amount of retries before an HTTP request fails. Default: {@value}
 		 */
 		public int retries = 3;
+
+		/**
+		 * The policy for delaying retries and breaking circuits of failing
+		 * hosts. <code>null</code> means a default policy shared by all
+		 * options, which does not break circuits.
+		 */
+		public RetryPolicy retryPolicy = null;
+
+		/**
+		 * The timeout for establishing a connection in milliseconds or
+		 * <code>0</code> for no timeout. Default: {@value}
+		 */
+		public int connectTimeoutMillis = 30000;
+
+		/**
+		 * The timeout for reading from a connection in milliseconds or
+		 * <code>0</code> for no timeout. Default: {@value}
+		 */
+		public int readTimeoutMillis = 30000;
+
+		/**
+		 * Whether redirects are followed, also between HTTP and HTTPS. If not,
+		 * redirect responses fail. Default: {@value}
+		 */
+		public boolean followRedirects = true;
+
+		/**
+		 * The maximum size of a decoded response body in bytes, longer bodies
+		 * are truncated. <code>0</code> means unlimited. Default: 1 MB
+		 */
+		public int maxBodySize = 1024 * 1024;
+
+		/**
+		 * Whether successful responses are parsed regardless of their content
+		 * type. If not, responses that are neither text nor XML fail.
+		 * Default: {@value}
+		 */
+		public boolean ignoreContentType = false;
+
+		/**
+		 * The fetcher downloading the documents. <code>null</code> means the
+		 * fetcher registered as service or the {@link DefaultFetcher}.
+		 */
+		public Fetcher fetcher = null;
+
+		/**
+		 * The cache of parsed documents, which may be shared by several
+		 * options. <code>null</code> means documents are not cached.
+		 */
+		public DocumentCache documentCache = null;
+	}
+
+	/** Holder of the default fetcher, which is loaded on first use. */
+	private static class FetcherHolder
+	{
+		/** The default fetcher. */
+		private static final Fetcher DEFAULT = loadFetcher();
+
+		/**
+		 * @return The first fetcher registered as service or a new
+		 *         {@link DefaultFetcher}.
+		 */
+		private static Fetcher loadFetcher()
+		{
+			Iterator<Fetcher> fetchers = ServiceLoader.load(Fetcher.class).iterator();
+			if (fetchers.hasNext())
+			{
+				return fetchers.next();
+			}
+			return new DefaultFetcher();
+		}
 	}
 
 	/** The default Http connection options. */
 	private static final ConnectionOptions DEFAULT_HTTP_OPTIONS = new ConnectionOptions();
 
+	/**
+	 * The default retry policy. Circuit breaking is disabled, so the policy
+	 * has no state shared by all scrapers of the JVM.
+	 */
+	private static final RetryPolicy DEFAULT_RETRY_POLICY = new RetryPolicy();
+
 	/**
 	 * Creates a {@link ScraperSource} from the document accessible from the
 	 * given URL with a default of {@value #DEFAULT_RETRIES} retries.
@@ -54,7 +149,45 @@ public abstract class ScraperSource
 			@Override
 			public Element getElement() throws ScraperException
 			{
-				return fetchDocument(url, options);
+				return fetch().getElement();
+			}
+
+			/**
+			 * {@inheritDoc}
+			 * <p>
+			 * With a document cache, the document is also parsed.
+			 */
+			@Override
+			public ScraperSource fetch() throws ScraperException
+			{
+				if (options != null && options.documentCache != null)
+				{
+					return new DefaultScraperSource(options.documentCache.get(
+							url,
+							new DocumentCache.Download()
+							{
+								@Override
+								public FetchResponse fetch()
+										throws ScraperException
+								{
+									return fetchResponse(url, options);
+								}
+							}));
+				}
+				return new FetchedScraperSource(fetchResponse(url, options));
+			}
+
+			@Override
+			public String getHost()
+			{
+				try
+				{
+					return new URL(url).getHost();
+				}
+				catch (MalformedURLException e)
+				{
+					return null;
+				}
 			}
 		};
 	}
@@ -67,6 +200,32 @@ public abstract class ScraperSource
 		return new DefaultScraperSource(Jsoup.parse(html));
 	}
 
+	/**
+	 * Creates a {@link ScraperSource} from a local HTML file, e.g. a large
+	 * dump. The file is memory-mapped outside the heap and decoded in chunks
+	 * while jsoup parses it, so besides the parsed document neither the raw
+	 * bytes nor the whole text are on the heap. The file is read each time the
+	 * element is retrieved.
+	 */
+	public static ScraperSource fromPath(final Path path, final Charset charset)
+	{
+		return new ScraperSource()
+		{
+			@Override
+			public Element getElement() throws ScraperException
+			{
+				try
+				{
+					return parseMapped(path, charset);
+				}
+				catch (IOException e)
+				{
+					throw new ScraperException("Could not read file", e); //$NON-NLS-1$
+				}
+			}
+		};
+	}
+
 	/**
 	 * Creates a {@link ScraperSource} from {@link Element}.
 	 */
@@ -75,44 +234,98 @@ public abstract class ScraperSource
 		return new DefaultScraperSource(element);
 	}
 
-	/** Fetches the document with the given Http connection options. */
-	private static Document fetchDocument(String url, ConnectionOptions options)
-			throws ScraperException
+	/**
+	 * Fetches the response of the document with the given Http connection
+	 * options. The body is downloaded, but not parsed.
+	 */
+	private static FetchResponse fetchResponse(
+			String url,
+			ConnectionOptions options) throws ScraperException
 	{
 		if (options == null)
 		{
 			options = DEFAULT_HTTP_OPTIONS;
 		}
+		Fetcher fetcher = options.fetcher;
+		if (fetcher == null)
+		{
+			fetcher = FetcherHolder.DEFAULT;
+		}
 
-		for (int retries = options.retries; retries >= 0; retries--)
+		RetryPolicy retryPolicy = options.retryPolicy;
+		if (retryPolicy == null)
 		{
-			try
-			{
-				Connection connection = Jsoup.connect(url);
-				if (options.userAgent != null)
-				{
-					connection.userAgent(options.userAgent);
-				}
+			retryPolicy = DEFAULT_RETRY_POLICY;
+		}
 
-				return connection.get();
-			}
-			catch (IOException e)
+		try
+		{
+			return retryPolicy.fetch(
+					fetcher,
+					url,
+					Collections.<String, String> emptyMap(),
+					options);
+		}
+		catch (IOException e)
+		{
+			throw new ScraperException("Could not connect to website", e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @return The document of the memory-mapped file, which is decoded with
+	 *         the charset while parsing. Malformed input is replaced.
+	 */
+	private static Document parseMapped(Path path, Charset charset)
+			throws IOException
+	{
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try
+		{
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
 			{
-				if (retries == 0)
-				{
-					throw new ScraperException(
-							"Could not connect to website", //$NON-NLS-1$
-							e);
-				}
+				throw new IOException("File too large: " + path); //$NON-NLS-1$
 			}
-		}
 
-		throw new IllegalStateException("This state should not be reached"); //$NON-NLS-1$
+			// jsoup requires a reader supporting marks
+			return Parser.htmlParser().parseInput(
+					new BufferedReader(new DecodingReader(
+							channel.map(MapMode.READ_ONLY, 0, size),
+							charset)),
+					path.toUri().toString());
+		}
+		finally
+		{
+			channel.close();
+		}
 	}
 
 	/** @return The {@link Element} that will be scraped. */
 	public abstract Element getElement() throws ScraperException;
 
+	/**
+	 * Performs the I/O-bound part of retrieving the element, e.g. downloading
+	 * a document, so that {@link #getElement()} of the returned source only
+	 * needs CPU-bound work like parsing. Staged scrapers call this on their
+	 * fetch stage. Default: returns this source.
+	 */
+	public ScraperSource fetch() throws ScraperException
+	{
+		return this;
+	}
+
+	/**
+	 * @return The host the source retrieves the element from, which is used
+	 *         for limiting the load per host (see {@link PolitenessOptions}),
+	 *         or <code>null</code> if the element is not retrieved from a host.
+	 *         Default: <code>null</code>.
+	 */
+	public String getHost()
+	{
+		return null;
+	}
+
 	/**
 	 * Default implementation of a ScraperSource that works on an
 	 * {@link Element}.
@@ -136,6 +349,33 @@ public abstract class ScraperSource
 		}
 	}
 
+	/** ScraperSource parsing the document of a fetched Http response. */
+	private static class FetchedScraperSource extends ScraperSource
+	{
+		/** The fetched response. */
+		private final FetchResponse response;
+
+		/** Constructor. */
+		private FetchedScraperSource(FetchResponse response)
+		{
+			this.response = response;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Element getElement() throws ScraperException
+		{
+			try
+			{
+				return this.response.parse();
+			}
+			catch (IOException e)
+			{
+				throw new ScraperException("Could not parse website", e); //$NON-NLS-1$
+			}
+		}
+	}
+
 	/**
 	 * Interface for objects that provide a {@link ScraperSource}. If a field
 	 * annotated with {@link Scrape} implements this interface, the
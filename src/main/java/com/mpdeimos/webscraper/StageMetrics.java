@@ -0,0 +1,25 @@
+package com.mpdeimos.webscraper;
+
+/**
+ * Metrics of a stage of a staged {@link Scraper}, e.g. the fetch or the bind
+ * stage.
+ * 
+ * @author mpdeimos
+ */
+public interface StageMetrics
+{
+	/** @return The name of the stage. */
+	public String getName();
+
+	/** @return The amount of threads of the stage. */
+	public int getParallelism();
+
+	/** @return The amount of tasks waiting for execution by the stage. */
+	public int getQueueDepth();
+
+	/** @return The maximum amount of tasks that were waiting at once. */
+	public int getMaxQueueDepth();
+
+	/** @return The approximate amount of tasks executed by the stage. */
+	public long getCompletedTaskCount();
+}
@@ -0,0 +1,32 @@
+package com.mpdeimos.webscraper;
+
+import com.mpdeimos.webscraper.conversion.Converter;
+import com.mpdeimos.webscraper.selection.Selector;
+import com.mpdeimos.webscraper.validation.Validator;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link Selector}, {@link Validator} or {@link Converter} as
+ * stateless. The scraper creates a single instance of such a processor and
+ * shares it for all fields, elements and threads. Processors without this
+ * annotation are instantiated anew for each processed value.
+ * <p>
+ * Annotated processors must provide an accessible parameterless constructor,
+ * must not keep state between invocations and must be safe for concurrent
+ * invocation by the worker threads of a scraper. The annotation is not
+ * inherited, so subclasses have to declare it on their own.
+ * 
+ * @author mpdeimos
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Stateless
+{
+	// marker annotation
+}
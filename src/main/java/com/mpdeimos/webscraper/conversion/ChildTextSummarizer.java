@@ -2,6 +2,7 @@ package com.mpdeimos.webscraper.conversion;
 
 import com.mpdeimos.webscraper.ScraperContext;
 import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.Stateless;
 import com.mpdeimos.webscraper.util.Strings;
 
 import java.lang.annotation.Retention;
@@ -17,6 +18,7 @@ import org.jsoup.nodes.Element;
  * 
  * @author mpdeimos
  */
+@Stateless
 public class ChildTextSummarizer implements Converter
 {
 	/** Option annotation for {@link ChildTextSummarizer}. */
@@ -36,10 +38,9 @@ public class ChildTextSummarizer implements Converter
 	{
 		HashSet<String> include = new HashSet<String>();
 		HashSet<String> exclude = new HashSet<String>();
-		if (context.getTargetField().isAnnotationPresent(Option.class))
+		Option option = context.getOption(Option.class);
+		if (option != null)
 		{
-			Option option = context.getTargetField().getAnnotation(
-					Option.class);
 			include.addAll(Arrays.asList(option.include()));
 			exclude.addAll(Arrays.asList(option.exclude()));
 		}
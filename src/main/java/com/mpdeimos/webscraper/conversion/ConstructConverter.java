@@ -10,6 +10,7 @@ import org.jsoup.nodes.Element;
 import com.mpdeimos.webscraper.ScraperContext;
 import com.mpdeimos.webscraper.ScraperError;
 import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.Stateless;
 
 /**
  * Converter for conversion by calling a constructor using either the source
@@ -18,6 +19,7 @@ import com.mpdeimos.webscraper.ScraperException;
  * 
  * @author mpdeimos
  */
+@Stateless
 public class ConstructConverter implements Converter
 {
 	/** Option annotation for {@link ConstructConverter}. */
@@ -83,10 +85,9 @@ public class ConstructConverter implements Converter
 	{
 		EArgumentType[] argumentTypes = { EArgumentType.TEXT };
 		String[] args = {};
-		if (context.getTargetField().isAnnotationPresent(Option.class))
+		Option option = context.getOption(Option.class);
+		if (option != null)
 		{
-			Option option = context.getTargetField()
-					.getAnnotation(Option.class);
 			argumentTypes = option.value();
 			args = option.strings();
 		}
@@ -2,6 +2,7 @@ package com.mpdeimos.webscraper.conversion;
 
 import com.mpdeimos.webscraper.ScraperContext;
 import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.Stateless;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -16,6 +17,7 @@ import java.util.Locale;
  * 
  * @author mpdeimos
  */
+@Stateless
 public class DateFormatConverter implements Converter
 {
 	/** Option annotation for {@link DateFormatConverter}. */
@@ -33,10 +35,9 @@ public class DateFormatConverter implements Converter
 		try
 		{
 			DateFormat format = DateFormat.getInstance();
-			if (context.getTargetField().isAnnotationPresent(Option.class))
+			Option option = context.getOption(Option.class);
+			if (option != null)
 			{
-				Option option = context.getTargetField().getAnnotation(
-						Option.class);
 				format = new SimpleDateFormat(option.value(), Locale.US);
 			}
 			return format.parse(context.getSourceText());
@@ -3,6 +3,7 @@ package com.mpdeimos.webscraper.conversion;
 import com.mpdeimos.webscraper.Scraper;
 import com.mpdeimos.webscraper.ScraperContext;
 import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.Stateless;
 
 /**
  * Converter that continues scraping with target object. For this it has to
@@ -13,6 +14,7 @@ import com.mpdeimos.webscraper.ScraperException;
  * 
  * @author mpdeimos
  */
+@Stateless
 public class DeepScrapeConverter implements Converter
 {
 	/** {@inheritDoc} */
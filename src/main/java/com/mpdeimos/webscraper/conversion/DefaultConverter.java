@@ -2,6 +2,7 @@ package com.mpdeimos.webscraper.conversion;
 
 import com.mpdeimos.webscraper.ScraperContext;
 import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.Stateless;
 import com.mpdeimos.webscraper.util.Reflections;
 
 /**
@@ -9,6 +10,7 @@ import com.mpdeimos.webscraper.util.Reflections;
  * 
  * @author mpdeimos
  */
+@Stateless
 public class DefaultConverter implements Converter
 {
 
@@ -2,6 +2,7 @@ package com.mpdeimos.webscraper.conversion;
 
 import com.mpdeimos.webscraper.ScraperContext;
 import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.Stateless;
 
 import java.text.NumberFormat;
 import java.text.ParseException;
@@ -11,6 +12,7 @@ import java.text.ParseException;
  * 
  * @author mpdeimos
  */
+@Stateless
 public class NumberFormatConverter implements Converter
 {
 
@@ -0,0 +1,662 @@
+package com.mpdeimos.webscraper.fetching;
+
+import com.mpdeimos.webscraper.ScraperSource.ConnectionOptions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@link Fetcher} caching responses in a directory on disk, e.g. for repeated
+ * crawls of the same pages. Successful responses with an <code>ETag</code> or
+ * <code>Last-Modified</code> header are stored gzip-compressed, one file per
+ * URL. Cached URLs are revalidated with <code>If-None-Match</code> and
+ * <code>If-Modified-Since</code> and a <code>304 Not Modified</code> response
+ * is served from disk, with the stored headers updated by the headers of the
+ * <code>304</code> response. Bodies of entries are only read if they are
+ * served. Corrupt entries are cache misses.
+ * <p>
+ * Responses with <code>Cache-Control: no-store</code> or <code>private</code>
+ * are not stored. Since entries are keyed by URL only, neither are responses
+ * with a <code>Vary</code> header naming request headers other than
+ * <code>Accept-Encoding</code>, whose bodies are stored decoded. Bodies
+ * reaching {@link ConnectionOptions#maxBodySize} may be truncated and are not
+ * stored either.
+ * <p>
+ * Entries not used for the maximum age are evicted, and the least recently
+ * used entries are evicted if the cache exceeds its maximum size. The cache
+ * may be shared by several scrapers and processes, which only race on
+ * eviction.
+ *
+ * @author mpdeimos
+ */
+public class CachingFetcher implements Fetcher
+{
+	/** The version of the entry format. */
+	private static final int FORMAT_VERSION = 2;
+
+	/** The file extension of entries. */
+	private static final String ENTRY_EXTENSION = ".entry"; //$NON-NLS-1$
+
+	/**
+	 * The maximum compression ratio of deflate, which bounds the decompressed
+	 * size of an entry by its file size.
+	 */
+	private static final long MAX_COMPRESSION_RATIO = 1032;
+
+	/** The charset of URLs hashed for file names and of stored strings. */
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	/** The fetcher used for downloading and revalidating. */
+	private final Fetcher delegate;
+
+	/** The directory of the cache. */
+	private final Path directory;
+
+	/** The maximum size of all entries in bytes. */
+	private final long maxSizeBytes;
+
+	/** The maximum time in milliseconds since an entry has been used. */
+	private final long maxAgeMillis;
+
+	/** The estimated size of all entries in bytes. */
+	private final AtomicLong size = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param delegate
+	 *            The fetcher used for downloading and revalidating.
+	 * @param directory
+	 *            The directory of the cache, which is created if needed.
+	 * @param maxSizeBytes
+	 *            The maximum size of all compressed entries in bytes.
+	 * @param maxAgeMillis
+	 *            The maximum time in milliseconds since an entry has been used
+	 *            before it is evicted.
+	 * @throws IOException
+	 *             If the directory cannot be created or read.
+	 */
+	public CachingFetcher(
+			Fetcher delegate,
+			Path directory,
+			long maxSizeBytes,
+			long maxAgeMillis) throws IOException
+	{
+		this.delegate = delegate;
+		this.directory = directory;
+		this.maxSizeBytes = maxSizeBytes;
+		this.maxAgeMillis = maxAgeMillis;
+
+		Files.createDirectories(directory);
+		evict();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public FetchResponse fetch(
+			String url,
+			Map<String, String> headers,
+			ConnectionOptions options) throws IOException
+	{
+		Path file = getEntryFile(url);
+		FetchResponse cached = readEntry(file, false);
+
+		Map<String, String> requestHeaders = headers;
+		if (cached != null)
+		{
+			requestHeaders = new HashMap<String, String>(headers);
+			addValidator(
+					requestHeaders,
+					"If-None-Match", //$NON-NLS-1$
+					cached.getHeader("ETag")); //$NON-NLS-1$
+			addValidator(
+					requestHeaders,
+					"If-Modified-Since", //$NON-NLS-1$
+					cached.getHeader("Last-Modified")); //$NON-NLS-1$
+		}
+
+		FetchResponse response = this.delegate.fetch(
+				url,
+				requestHeaders,
+				options);
+		if (cached != null
+				&& response.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED)
+		{
+			FetchResponse stored = readEntry(file, true);
+			if (stored != null)
+			{
+				return refresh(file, stored, response);
+			}
+
+			// the entry has been evicted or corrupted meanwhile
+			response = this.delegate.fetch(url, headers, options);
+		}
+
+		if (isStorable(response) && !isTruncated(response, options))
+		{
+			writeEntry(file, response);
+		}
+		else if (cached != null
+				&& response.getStatusCode() == HttpURLConnection.HTTP_OK)
+		{
+			// the document must not be cached anymore
+			delete(file, sizeOf(file));
+		}
+		return response;
+	}
+
+	/**
+	 * Updates the headers of the stored response with the headers of the
+	 * <code>304 Not Modified</code> response. The entry is rewritten if the
+	 * headers changed and deleted if it must not be stored anymore.
+	 * 
+	 * @return The stored response with the updated headers.
+	 */
+	private FetchResponse refresh(
+			Path file,
+			FetchResponse stored,
+			FetchResponse notModified)
+	{
+		Map<String, List<String>> headers = new TreeMap<String, List<String>>(
+				String.CASE_INSENSITIVE_ORDER);
+		headers.putAll(stored.getHeaders());
+		for (Map.Entry<String, List<String>> header : notModified.getHeaders().entrySet())
+		{
+			if (!isBodyHeader(header.getKey()))
+			{
+				headers.put(header.getKey(), header.getValue());
+			}
+		}
+
+		FetchResponse refreshed = new FetchResponse(
+				stored.getUrl(),
+				stored.getStatusCode(),
+				headers,
+				stored.getBody());
+		if (!isStorable(refreshed))
+		{
+			delete(file, sizeOf(file));
+		}
+		else if (headers.equals(stored.getHeaders()))
+		{
+			touch(file);
+		}
+		else
+		{
+			writeEntry(file, refreshed);
+		}
+		return refreshed;
+	}
+
+	/**
+	 * @return Whether the body of the response may have been truncated to the
+	 *         maximum body size of the options.
+	 */
+	private static boolean isTruncated(
+			FetchResponse response,
+			ConnectionOptions options)
+	{
+		return options.maxBodySize > 0
+				&& response.getBody().length >= options.maxBodySize;
+	}
+
+	/**
+	 * @return Whether the header describes the encoding or length of the
+	 *         transferred body, which does not apply to the stored decoded
+	 *         body.
+	 */
+	private static boolean isBodyHeader(String name)
+	{
+		return "Content-Encoding".equalsIgnoreCase(name) //$NON-NLS-1$
+				|| "Content-Length".equalsIgnoreCase(name) //$NON-NLS-1$
+				|| "Transfer-Encoding".equalsIgnoreCase(name); //$NON-NLS-1$
+	}
+
+	/**
+	 * @return Whether the response is successful, has a validator and may be
+	 *         stored for any request to its URL.
+	 */
+	private static boolean isStorable(FetchResponse response)
+	{
+		if (response.getStatusCode() != HttpURLConnection.HTTP_OK
+				|| (response.getHeader("ETag") == null && response.getHeader("Last-Modified") == null)) //$NON-NLS-1$ //$NON-NLS-2$
+		{
+			return false;
+		}
+
+		for (String directive : getTokens(response, "Cache-Control")) //$NON-NLS-1$
+		{
+			if ("no-store".equals(directive) || "private".equals(directive)) //$NON-NLS-1$ //$NON-NLS-2$
+			{
+				return false;
+			}
+		}
+		for (String name : getTokens(response, "Vary")) //$NON-NLS-1$
+		{
+			if (!"accept-encoding".equals(name)) //$NON-NLS-1$
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return The lower case, comma-separated tokens of all values of the
+	 *         header without their arguments.
+	 */
+	private static List<String> getTokens(FetchResponse response, String name)
+	{
+		List<String> tokens = new ArrayList<String>();
+		List<String> values = response.getHeaders().get(name);
+		if (values == null)
+		{
+			return tokens;
+		}
+
+		for (String value : values)
+		{
+			for (String token : value.split(",")) //$NON-NLS-1$
+			{
+				int argument = token.indexOf('=');
+				if (argument >= 0)
+				{
+					token = token.substring(0, argument);
+				}
+				token = token.trim().toLowerCase(Locale.ROOT);
+				if (!token.isEmpty())
+				{
+					tokens.add(token);
+				}
+			}
+		}
+		return tokens;
+	}
+
+	/** Adds the validator header unless already present. */
+	private static void addValidator(
+			Map<String, String> headers,
+			String name,
+			String value)
+	{
+		if (value != null && !headers.containsKey(name))
+		{
+			headers.put(name, value);
+		}
+	}
+
+	/**
+	 * @param readBody
+	 *            Whether the body is read. Otherwise, only the status and
+	 *            headers are read, e.g. for revalidating the entry, and the
+	 *            body of the returned response is empty.
+	 * @return The cached response of the entry file or <code>null</code> if
+	 *         there is no entry, it is expired or cannot be read.
+	 */
+	private FetchResponse readEntry(Path file, boolean readBody)
+	{
+		try
+		{
+			BasicFileAttributes attributes = Files.readAttributes(
+					file,
+					BasicFileAttributes.class);
+			if (isExpired(attributes, System.currentTimeMillis()))
+			{
+				delete(file, attributes.size());
+				return null;
+			}
+
+			long maxLength = attributes.size() * MAX_COMPRESSION_RATIO;
+			DataInputStream in = new DataInputStream(new GZIPInputStream(
+					new BufferedInputStream(Files.newInputStream(file))));
+			try
+			{
+				if (in.readInt() != FORMAT_VERSION)
+				{
+					throw new IOException("Unsupported cache entry"); //$NON-NLS-1$
+				}
+
+				String url = readString(in, maxLength);
+				int statusCode = in.readInt();
+				Map<String, List<String>> headers = new HashMap<String, List<String>>();
+				for (int i = in.readInt(); i > 0; i--)
+				{
+					String name = readString(in, maxLength);
+					List<String> values = new ArrayList<String>();
+					for (int j = in.readInt(); j > 0; j--)
+					{
+						values.add(readString(in, maxLength));
+					}
+					headers.put(name, values);
+				}
+
+				byte[] body = new byte[0];
+				if (readBody)
+				{
+					body = readBytes(in, maxLength);
+				}
+				return new FetchResponse(url, statusCode, headers, body);
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch (NoSuchFileException e)
+		{
+			return null;
+		}
+		catch (IOException e)
+		{
+			// corrupt entries are refetched
+			delete(file, sizeOf(file));
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the response to the entry file. Failures are ignored, so the
+	 * response is just not cached.
+	 */
+	private void writeEntry(Path file, FetchResponse response)
+	{
+		Path temp = null;
+		try
+		{
+			temp = Files.createTempFile(this.directory, null, ".tmp"); //$NON-NLS-1$
+			OutputStream stream = Files.newOutputStream(temp);
+			DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+					new BufferedOutputStream(stream)));
+			try
+			{
+				out.writeInt(FORMAT_VERSION);
+				writeString(out, response.getUrl());
+				out.writeInt(response.getStatusCode());
+
+				Map<String, List<String>> headers = new TreeMap<String, List<String>>(
+						String.CASE_INSENSITIVE_ORDER);
+				headers.putAll(response.getHeaders());
+				// the body is stored decoded
+				headers.keySet().removeIf(new Predicate<String>()
+				{
+					@Override
+					public boolean test(String name)
+					{
+						return isBodyHeader(name);
+					}
+				});
+				out.writeInt(headers.size());
+				for (Map.Entry<String, List<String>> header : headers.entrySet())
+				{
+					writeString(out, header.getKey());
+					out.writeInt(header.getValue().size());
+					for (String value : header.getValue())
+					{
+						writeString(out, value);
+					}
+				}
+
+				out.writeInt(response.getBody().length);
+				out.write(response.getBody());
+			}
+			finally
+			{
+				out.close();
+			}
+
+			long previousSize = sizeOf(file);
+			move(temp, file);
+			temp = null;
+			if (this.size.addAndGet(sizeOf(file) - previousSize) > this.maxSizeBytes)
+			{
+				evict();
+			}
+		}
+		catch (IOException e)
+		{
+			// caching is best effort
+		}
+		finally
+		{
+			if (temp != null)
+			{
+				deleteQuietly(temp);
+			}
+		}
+	}
+
+	/**
+	 * Writes the string as length-prefixed UTF-8 bytes, which unlike
+	 * {@link DataOutputStream#writeUTF(String)} supports long headers.
+	 */
+	private static void writeString(DataOutputStream out, String string)
+			throws IOException
+	{
+		byte[] bytes = string.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * @return The string written by {@link #writeString}.
+	 * @param maxLength
+	 *            The maximum valid length in bytes.
+	 */
+	private static String readString(DataInputStream in, long maxLength)
+			throws IOException
+	{
+		return new String(readBytes(in, maxLength), UTF8);
+	}
+
+	/**
+	 * @return The length-prefixed bytes.
+	 * @param maxLength
+	 *            The maximum valid length, which guards against allocating
+	 *            arrays for corrupt lengths.
+	 * @throws IOException
+	 *             If the length is corrupt or the bytes cannot be allocated.
+	 */
+	private static byte[] readBytes(DataInputStream in, long maxLength)
+			throws IOException
+	{
+		int length = in.readInt();
+		if (length < 0 || length > maxLength)
+		{
+			throw new IOException("Corrupt cache entry"); //$NON-NLS-1$
+		}
+
+		byte[] bytes;
+		try
+		{
+			bytes = new byte[length];
+		}
+		catch (OutOfMemoryError e)
+		{
+			throw new IOException("Cache entry too large", e); //$NON-NLS-1$
+		}
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Deletes expired entries and the least recently used entries till the
+	 * cache does not exceed its maximum size. Recomputes the size of the
+	 * cache.
+	 */
+	private synchronized void evict() throws IOException
+	{
+		final Map<Path, BasicFileAttributes> entries = new HashMap<Path, BasicFileAttributes>();
+		long now = System.currentTimeMillis();
+		long total = 0;
+		DirectoryStream<Path> stream = Files.newDirectoryStream(
+				this.directory,
+				"*" + ENTRY_EXTENSION); //$NON-NLS-1$
+		try
+		{
+			for (Path file : stream)
+			{
+				try
+				{
+					BasicFileAttributes attributes = Files.readAttributes(
+							file,
+							BasicFileAttributes.class);
+					if (isExpired(attributes, now))
+					{
+						deleteQuietly(file);
+						continue;
+					}
+					entries.put(file, attributes);
+					total += attributes.size();
+				}
+				catch (IOException e)
+				{
+					// deleted concurrently
+				}
+			}
+		}
+		finally
+		{
+			stream.close();
+		}
+
+		List<Path> files = new ArrayList<Path>(entries.keySet());
+		Collections.sort(files, new Comparator<Path>()
+		{
+			@Override
+			public int compare(Path file1, Path file2)
+			{
+				return entries.get(file1).lastModifiedTime().compareTo(
+						entries.get(file2).lastModifiedTime());
+			}
+		});
+		for (Path file : files)
+		{
+			if (total <= this.maxSizeBytes)
+			{
+				break;
+			}
+			deleteQuietly(file);
+			total -= entries.get(file).size();
+		}
+		this.size.set(total);
+	}
+
+	/** @return Whether the entry has not been used for the maximum age. */
+	private boolean isExpired(BasicFileAttributes attributes, long now)
+	{
+		return now - attributes.lastModifiedTime().toMillis() > this.maxAgeMillis;
+	}
+
+	/** Marks the entry file as recently used. */
+	private static void touch(Path file)
+	{
+		try
+		{
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		}
+		catch (IOException e)
+		{
+			// evicted concurrently
+		}
+	}
+
+	/** Deletes an entry file of the given size. */
+	private void delete(Path file, long fileSize)
+	{
+		if (deleteQuietly(file))
+		{
+			this.size.addAndGet(-fileSize);
+		}
+	}
+
+	/** @return The entry file of the URL. */
+	private Path getEntryFile(String url)
+	{
+		try
+		{
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest( //$NON-NLS-1$
+					url.getBytes(UTF8));
+			StringBuilder name = new StringBuilder();
+			for (byte b : hash)
+			{
+				name.append(String.format("%02x", b)); //$NON-NLS-1$
+			}
+			return this.directory.resolve(name.append(ENTRY_EXTENSION).toString());
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException("SHA-256 is always supported", e); //$NON-NLS-1$
+		}
+	}
+
+	/** Replaces the target file atomically if supported. */
+	private static void move(Path source, Path target) throws IOException
+	{
+		try
+		{
+			Files.move(
+					source,
+					target,
+					StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/** @return The size of the file or <code>0</code> if it does not exist. */
+	private static long sizeOf(Path file)
+	{
+		try
+		{
+			return Files.size(file);
+		}
+		catch (IOException e)
+		{
+			return 0;
+		}
+	}
+
+	/** @return Whether the file has been deleted. */
+	private static boolean deleteQuietly(Path file)
+	{
+		try
+		{
+			return Files.deleteIfExists(file);
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+	}
+}
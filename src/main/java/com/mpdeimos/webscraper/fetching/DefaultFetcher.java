@@ -0,0 +1,242 @@
+package com.mpdeimos.webscraper.fetching;
+
+import com.mpdeimos.webscraper.ScraperSource.ConnectionOptions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.jsoup.UnsupportedMimeTypeException;
+
+/**
+ * Default {@link Fetcher} based on {@link HttpURLConnection}. Connections are
+ * kept alive and reused from the JVM-wide connection cache, which requires
+ * that each response body is read completely, including bodies of error
+ * responses. Bodies are requested with gzip or deflate compression and
+ * decoded before parsing.
+ * <p>
+ * Like jsoup, redirects are followed also between HTTP and HTTPS, bodies
+ * exceeding {@link ConnectionOptions#maxBodySize} are truncated and
+ * successful responses whose content type is neither text nor XML fail with an
+ * {@link UnsupportedMimeTypeException} unless
+ * {@link ConnectionOptions#ignoreContentType} is set.
+ * <p>
+ * The size of the connection cache per host is configured by the system
+ * property <code>http.maxConnections</code>.
+ *
+ * @author mpdeimos
+ */
+public class DefaultFetcher implements Fetcher
+{
+	/** The size of the buffer for reading bodies. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** The maximum amount of followed redirects of a request. */
+	private static final int MAX_REDIRECTS = 20;
+
+	/** Pattern of XML content types, which are parsed besides text types. */
+	private static final Pattern XML_CONTENT_TYPE = Pattern.compile(
+			"(application|text)/\\w*\\+?xml.*"); //$NON-NLS-1$
+
+	/** {@inheritDoc} */
+	@Override
+	public FetchResponse fetch(
+			String url,
+			Map<String, String> headers,
+			ConnectionOptions options) throws IOException
+	{
+		URL location = new URL(url);
+		for (int redirects = 0;; redirects++)
+		{
+			HttpURLConnection connection = open(location, headers, options);
+			int statusCode = connection.getResponseCode();
+			String target = connection.getHeaderField("Location"); //$NON-NLS-1$
+			if (!options.followRedirects || !isRedirect(statusCode)
+					|| target == null)
+			{
+				return read(connection, statusCode, options);
+			}
+
+			// reading the body completely allows reusing the connection
+			readBody(connection, statusCode, 0).close();
+			if (redirects >= MAX_REDIRECTS)
+			{
+				throw new ProtocolException("Too many redirects fetching URL " //$NON-NLS-1$
+						+ url);
+			}
+			location = new URL(location, target);
+		}
+	}
+
+	/**
+	 * @return A connection to the URL. Redirects are followed manually, since
+	 *         {@link HttpURLConnection} does not follow redirects between
+	 *         HTTP and HTTPS.
+	 */
+	private static HttpURLConnection open(
+			URL url,
+			Map<String, String> headers,
+			ConnectionOptions options) throws IOException
+	{
+		URLConnection urlConnection = url.openConnection();
+		if (!(urlConnection instanceof HttpURLConnection))
+		{
+			throw new ProtocolException("Only HTTP URLs are supported: " + url); //$NON-NLS-1$
+		}
+
+		HttpURLConnection connection = (HttpURLConnection) urlConnection;
+		connection.setConnectTimeout(options.connectTimeoutMillis);
+		connection.setReadTimeout(options.readTimeoutMillis);
+		connection.setInstanceFollowRedirects(false);
+		connection.setRequestProperty("Accept-Encoding", "gzip, deflate"); //$NON-NLS-1$ //$NON-NLS-2$
+		if (options.userAgent != null)
+		{
+			connection.setRequestProperty("User-Agent", options.userAgent); //$NON-NLS-1$
+		}
+		for (Map.Entry<String, String> header : headers.entrySet())
+		{
+			connection.setRequestProperty(header.getKey(), header.getValue());
+		}
+		return connection;
+	}
+
+	/** @return The response of the connection with its body. */
+	private static FetchResponse read(
+			HttpURLConnection connection,
+			int statusCode,
+			ConnectionOptions options) throws IOException
+	{
+		String contentType = connection.getContentType();
+		if (statusCode < HttpURLConnection.HTTP_MULT_CHOICE
+				&& !options.ignoreContentType && contentType != null
+				&& !contentType.startsWith("text/") //$NON-NLS-1$
+				&& !XML_CONTENT_TYPE.matcher(contentType).matches())
+		{
+			connection.disconnect();
+			throw new UnsupportedMimeTypeException(
+					"Unhandled content type. Must be text/*, application/xml, or application/xhtml+xml", //$NON-NLS-1$
+					contentType,
+					connection.getURL().toString());
+		}
+
+		ByteArrayOutputStream body = readBody(
+				connection,
+				statusCode,
+				options.maxBodySize);
+		return new FetchResponse(
+				connection.getURL().toString(),
+				statusCode,
+				connection.getHeaderFields(),
+				body.toByteArray());
+	}
+
+	/**
+	 * @return The decoded body of the connection, truncated to the maximum
+	 *         size unless it is <code>0</code>. The body is read completely
+	 *         if not truncated, which allows reusing the connection.
+	 */
+	private static ByteArrayOutputStream readBody(
+			HttpURLConnection connection,
+			int statusCode,
+			int maxSize) throws IOException
+	{
+		InputStream stream = connection.getErrorStream();
+		if (stream == null && statusCode < HttpURLConnection.HTTP_BAD_REQUEST)
+		{
+			stream = connection.getInputStream();
+		}
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		if (stream == null)
+		{
+			return body;
+		}
+
+		try
+		{
+			copy(decode(stream, connection.getContentEncoding()), body, maxSize);
+		}
+		finally
+		{
+			stream.close();
+		}
+		return body;
+	}
+
+	/** @return Whether the status is a redirect. */
+	private static boolean isRedirect(int statusCode)
+	{
+		return statusCode == HttpURLConnection.HTTP_MOVED_PERM
+				|| statusCode == HttpURLConnection.HTTP_MOVED_TEMP
+				|| statusCode == HttpURLConnection.HTTP_SEE_OTHER
+				|| statusCode == 307 || statusCode == 308;
+	}
+
+	/**
+	 * @return The stream decoding the given content encoding. Empty bodies,
+	 *         e.g. of redirects, are not decoded.
+	 */
+	static InputStream decode(InputStream stream, String encoding)
+			throws IOException
+	{
+		boolean gzip = "gzip".equalsIgnoreCase(encoding); //$NON-NLS-1$
+		boolean deflate = "deflate".equalsIgnoreCase(encoding); //$NON-NLS-1$
+		if (!gzip && !deflate)
+		{
+			return stream;
+		}
+
+		PushbackInputStream pushback = new PushbackInputStream(stream);
+		int first = pushback.read();
+		if (first == -1)
+		{
+			return pushback;
+		}
+		pushback.unread(first);
+
+		if (gzip)
+		{
+			return new GZIPInputStream(pushback, BUFFER_SIZE);
+		}
+		return new InflaterInputStream(pushback);
+	}
+
+	/** @return The bytes of the stream till its end. */
+	static byte[] readFully(InputStream stream) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		copy(stream, out, 0);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Copies the stream till its end or the maximum size unless it is
+	 * <code>0</code>.
+	 */
+	private static void copy(InputStream stream, OutputStream out, int maxSize)
+			throws IOException
+	{
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long remaining = maxSize == 0 ? Long.MAX_VALUE : maxSize;
+		int read;
+		while (remaining > 0
+				&& (read = stream.read(
+						buffer,
+						0,
+						(int) Math.min(buffer.length, remaining))) != -1)
+		{
+			out.write(buffer, 0, read);
+			remaining -= read;
+		}
+	}
+}
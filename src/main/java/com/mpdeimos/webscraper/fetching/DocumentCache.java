@@ -0,0 +1,214 @@
+package com.mpdeimos.webscraper.fetching;
+
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.ScraperSource.ConnectionOptions;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.jsoup.nodes.Document;
+
+/**
+ * In-memory cache of parsed documents of URL sources (see
+ * {@link ConnectionOptions#documentCache}), so targets and nested scrapes of
+ * the same URL download and parse it only once. Concurrent requests of a URL
+ * that is not cached share a single download.
+ * <p>
+ * The cache is bounded by the total size of the downloaded bodies, evicting
+ * the least recently used documents. Parsed documents take several times the
+ * size of their body on the heap. Cached documents are shared by all scrapes,
+ * so they must not be modified.
+ *
+ * @author mpdeimos
+ */
+public class DocumentCache
+{
+	/** The maximum total size of the cached bodies in bytes. */
+	private final long maxBytes;
+
+	/**
+	 * The cached and loading documents in access order. Guarded by this.
+	 */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(
+			16,
+			0.75f,
+			true);
+
+	/** The total size of the cached bodies in bytes. Guarded by this. */
+	private long bytes = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxBytes
+	 *            The maximum total size of the downloaded bodies of cached
+	 *            documents in bytes.
+	 */
+	public DocumentCache(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @return The cached document of the URL. If not cached, it is downloaded
+	 *         and parsed, or the download that is already running for the URL
+	 *         is awaited.
+	 * @throws ScraperException
+	 *             If downloading or parsing the document failed. Failures are
+	 *             not cached.
+	 */
+	public Document get(String url, Download download) throws ScraperException
+	{
+		Entry entry;
+		boolean loading = false;
+		synchronized (this)
+		{
+			entry = this.entries.get(url);
+			if (entry == null)
+			{
+				entry = new Entry();
+				this.entries.put(url, entry);
+				loading = true;
+			}
+		}
+
+		if (loading)
+		{
+			load(url, entry, download);
+		}
+		return await(entry);
+	}
+
+	/** Downloads and parses the document of the entry. */
+	private void load(String url, Entry entry, Download download)
+	{
+		try
+		{
+			FetchResponse response = download.fetch();
+			Document document = response.parse();
+			cached(url, entry, response.getBody().length);
+			entry.document.complete(document);
+		}
+		catch (IOException e)
+		{
+			failed(url, entry, new ScraperException(
+					"Could not parse website", e)); //$NON-NLS-1$
+		}
+		catch (ScraperException e)
+		{
+			failed(url, entry, e);
+		}
+		catch (RuntimeException e)
+		{
+			failed(url, entry, e);
+		}
+		catch (Error e)
+		{
+			failed(url, entry, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Accounts the size of a loaded entry and evicts the least recently used
+	 * entries exceeding the maximum size.
+	 */
+	private synchronized void cached(String url, Entry entry, long size)
+	{
+		if (this.entries.get(url) != entry)
+		{
+			// replaced after being evicted while loading
+			return;
+		}
+
+		entry.bytes = size;
+		this.bytes += size;
+		Iterator<Entry> iterator = this.entries.values().iterator();
+		while (this.bytes > this.maxBytes && iterator.hasNext())
+		{
+			Entry eldest = iterator.next();
+			if (eldest.document.isDone() || eldest == entry)
+			{
+				iterator.remove();
+				this.bytes -= eldest.bytes;
+			}
+		}
+	}
+
+	/** Removes an entry whose loading failed, so it is loaded again. */
+	private void failed(String url, Entry entry, Throwable failure)
+	{
+		synchronized (this)
+		{
+			if (this.entries.get(url) == entry)
+			{
+				this.entries.remove(url);
+			}
+		}
+		entry.document.completeExceptionally(failure);
+	}
+
+	/** @return The document of the entry once loaded. */
+	private static Document await(Entry entry) throws ScraperException
+	{
+		try
+		{
+			return entry.document.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new ScraperException("Interrupted while loading website", e); //$NON-NLS-1$
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof ScraperException)
+			{
+				throw (ScraperException) cause;
+			}
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+			throw new ScraperException("Could not load website", cause); //$NON-NLS-1$
+		}
+	}
+
+	/** @return The amount of cached or loading documents. */
+	public synchronized int size()
+	{
+		return this.entries.size();
+	}
+
+	/** Removes all documents from the cache. */
+	public synchronized void clear()
+	{
+		this.entries.clear();
+		this.bytes = 0;
+	}
+
+	/** Downloads the document of a URL. */
+	public interface Download
+	{
+		/** @return The response of the URL. */
+		public FetchResponse fetch() throws ScraperException;
+	}
+
+	/** A cached or loading document. */
+	private static class Entry
+	{
+		/** The future of the parsed document. */
+		private final CompletableFuture<Document> document = new CompletableFuture<Document>();
+
+		/** The size of the body or <code>0</code> while loading. */
+		private long bytes = 0;
+	}
+}
@@ -0,0 +1,152 @@
+package com.mpdeimos.webscraper.fetching;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * Downloaded HTTP response whose body has been read completely and decoded
+ * from its content encoding, e.g. gzip.
+ *
+ * @author mpdeimos
+ */
+public class FetchResponse
+{
+	/** Pattern for extracting the charset of a content type. */
+	private static final Pattern CHARSET_PATTERN = Pattern.compile(
+			"(?i)\\bcharset=\\s*\"?([^\\s;\"]*)"); //$NON-NLS-1$
+
+	/** The URL of the response after following redirects. */
+	private final String url;
+
+	/** The HTTP status code. */
+	private final int statusCode;
+
+	/** The response headers with case-insensitive names. */
+	private final Map<String, List<String>> headers;
+
+	/** The decoded body. */
+	private final byte[] body;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param headers
+	 *            The response headers. Names are matched case-insensitively.
+	 */
+	public FetchResponse(
+			String url,
+			int statusCode,
+			Map<String, List<String>> headers,
+			byte[] body)
+	{
+		this.url = url;
+		this.statusCode = statusCode;
+		TreeMap<String, List<String>> sortedHeaders = new TreeMap<String, List<String>>(
+				String.CASE_INSENSITIVE_ORDER);
+		for (Map.Entry<String, List<String>> header : headers.entrySet())
+		{
+			// the status line is reported with a null name
+			if (header.getKey() != null)
+			{
+				sortedHeaders.put(header.getKey(), header.getValue());
+			}
+		}
+		this.headers = Collections.unmodifiableMap(sortedHeaders);
+		this.body = body;
+	}
+
+	/** @see #url */
+	public String getUrl()
+	{
+		return this.url;
+	}
+
+	/** @see #statusCode */
+	public int getStatusCode()
+	{
+		return this.statusCode;
+	}
+
+	/** @see #headers */
+	public Map<String, List<String>> getHeaders()
+	{
+		return this.headers;
+	}
+
+	/**
+	 * @return The first value of the header with the given name or
+	 *         <code>null</code> if not present.
+	 */
+	public String getHeader(String name)
+	{
+		List<String> values = this.headers.get(name);
+		if (values == null || values.isEmpty())
+		{
+			return null;
+		}
+		return values.get(0);
+	}
+
+	/** @return The decoded body. Must not be modified. */
+	public byte[] getBody()
+	{
+		return this.body;
+	}
+
+	/**
+	 * @return The charset of the Content-Type header or <code>null</code> if
+	 *         not specified or not supported.
+	 */
+	public String getCharset()
+	{
+		String contentType = getHeader("Content-Type"); //$NON-NLS-1$
+		if (contentType == null)
+		{
+			return null;
+		}
+
+		Matcher matcher = CHARSET_PATTERN.matcher(contentType);
+		if (!matcher.find())
+		{
+			return null;
+		}
+
+		String charset = matcher.group(1);
+		try
+		{
+			if (!Charset.isSupported(charset))
+			{
+				return null;
+			}
+		}
+		catch (IllegalCharsetNameException e)
+		{
+			return null;
+		}
+		return charset.toUpperCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * @return The parsed document. If the charset is not specified by the
+	 *         response, it is detected from the document or defaults to UTF-8.
+	 */
+	public Document parse() throws IOException
+	{
+		return Jsoup.parse(
+				new ByteArrayInputStream(this.body),
+				getCharset(),
+				this.url);
+	}
+}
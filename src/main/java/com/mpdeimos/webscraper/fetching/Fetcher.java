@@ -0,0 +1,38 @@
+package com.mpdeimos.webscraper.fetching;
+
+import com.mpdeimos.webscraper.ScraperSource;
+import com.mpdeimos.webscraper.ScraperSource.ConnectionOptions;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Interface for downloading documents of URL sources (see
+ * {@link ScraperSource#fromUrl(String, ConnectionOptions)}). Implementations
+ * must be thread-safe.
+ * <p>
+ * The fetcher is taken from {@link ConnectionOptions#fetcher} if set.
+ * Otherwise the first implementation registered for
+ * {@link java.util.ServiceLoader} is used, with a fallback to
+ * {@link DefaultFetcher}.
+ *
+ * @author mpdeimos
+ */
+public interface Fetcher
+{
+	/**
+	 * Downloads the document with the given URL. The fetcher applies the
+	 * user agent, timeouts and redirect policy of the options, but does not
+	 * retry.
+	 *
+	 * @param headers
+	 *            Additional request headers.
+	 * @return The response of any status, including error statuses.
+	 * @throws IOException
+	 *             If the document cannot be downloaded.
+	 */
+	public FetchResponse fetch(
+			String url,
+			Map<String, String> headers,
+			ConnectionOptions options) throws IOException;
+}
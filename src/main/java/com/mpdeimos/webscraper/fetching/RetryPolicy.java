@@ -0,0 +1,421 @@
+package com.mpdeimos.webscraper.fetching;
+
+import com.mpdeimos.webscraper.ScraperSource.ConnectionOptions;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jsoup.UnsupportedMimeTypeException;
+
+/**
+ * Policy for retrying failed downloads of URL sources up to
+ * {@link ConnectionOptions#retries} times. Retries are delayed by an
+ * exponential backoff with random jitter or the delay requested by a
+ * <code>Retry-After</code> header. Responses with a non-retryable status, e.g.
+ * <code>404</code>, fail immediately.
+ * <p>
+ * If {@link #failureThreshold} is set, a circuit breaker per host stops
+ * requests to a host after this amount of consecutive failed attempts for
+ * {@link #openMillis}, so scrapes of a host during an outage fail fast instead
+ * of occupying threads. Afterwards, a single trial request decides whether the
+ * host is available again. The state of the circuit breakers is shared by all
+ * options using the same policy instance. Circuits of hosts without failed
+ * attempts for {@link #openMillis} are evicted.
+ *
+ * @author mpdeimos
+ */
+public class RetryPolicy
+{
+	/** The delay before the first retry in milliseconds. Default: {@value} */
+	public long initialBackoffMillis = 100;
+
+	/** The maximum delay between retries in milliseconds. Default: {@value} */
+	public long maxBackoffMillis = 10000;
+
+	/** The factor the delay grows with for each retry. Default: {@value} */
+	public double multiplier = 2;
+
+	/**
+	 * The fraction of the delay that is randomized, so clients do not retry in
+	 * lockstep. Default: {@value}
+	 */
+	public double jitter = 0.5;
+
+	/**
+	 * The maximum delay requested by a <code>Retry-After</code> header that is
+	 * honored in milliseconds. Longer delays fail the request immediately.
+	 * Default: {@value}
+	 */
+	public long maxRetryAfterMillis = 60000;
+
+	/**
+	 * The amount of consecutive failed attempts that opens the circuit of a
+	 * host or <code>0</code> to disable circuit breaking. Default: {@value}
+	 */
+	public int failureThreshold = 0;
+
+	/**
+	 * The time in milliseconds requests to a host fail fast after its circuit
+	 * opened. Default: {@value}
+	 */
+	public long openMillis = 30000;
+
+	/** The circuit breakers of hosts with failed attempts. */
+	private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<String, Circuit>();
+
+	/** The time of the next eviction of idle circuits. */
+	private final AtomicLong nextEviction = new AtomicLong(System.nanoTime());
+
+	/**
+	 * Fetches the document with the given fetcher, retrying failed attempts.
+	 *
+	 * @return The response with a successful status.
+	 * @throws IOException
+	 *             If all attempts failed, the status is not retryable, e.g. an
+	 *             unfollowed redirect, the response is not supported or the
+	 *             circuit of the host is open.
+	 */
+	public FetchResponse fetch(
+			Fetcher fetcher,
+			String url,
+			Map<String, String> headers,
+			ConnectionOptions options) throws IOException
+	{
+		String host = getCircuitKey(url);
+		for (int attempt = 0;; attempt++)
+		{
+			Circuit circuit = this.circuits.get(host);
+			if (circuit != null && !circuit.allowRequest(System.nanoTime()))
+			{
+				throw new IOException("Circuit breaker open for host " + host); //$NON-NLS-1$
+			}
+
+			try
+			{
+				long delay = getBackoffMillis(attempt);
+				IOException failure = null;
+				FetchResponse response = null;
+				try
+				{
+					response = fetcher.fetch(url, headers, options);
+				}
+				catch (InterruptedIOException e)
+				{
+					// timeouts are retried, interrupts are not
+					if (Thread.currentThread().isInterrupted())
+					{
+						recordFailure(host);
+						throw e;
+					}
+					failure = e;
+				}
+				catch (UnsupportedMimeTypeException e)
+				{
+					// the host responded properly, so it is available
+					this.circuits.remove(host);
+					throw e;
+				}
+				catch (ProtocolException e)
+				{
+					// redirect loops and unsupported protocols fail again
+					this.circuits.remove(host);
+					throw e;
+				}
+				catch (IOException e)
+				{
+					failure = e;
+				}
+				catch (RuntimeException e)
+				{
+					recordFailure(host);
+					throw e;
+				}
+
+				if (response != null)
+				{
+					int status = response.getStatusCode();
+					if (status < HttpURLConnection.HTTP_MULT_CHOICE)
+					{
+						this.circuits.remove(host);
+						return response;
+					}
+
+					failure = new IOException("HTTP error fetching URL " + url //$NON-NLS-1$
+							+ ": Status " + status); //$NON-NLS-1$
+					if (!isRetryable(status))
+					{
+						// the host responded properly, so it is available
+						this.circuits.remove(host);
+						throw failure;
+					}
+
+					long retryAfter = getRetryAfterMillis(response);
+					if (retryAfter > this.maxRetryAfterMillis)
+					{
+						recordFailure(host);
+						throw failure;
+					}
+					delay = Math.max(delay, retryAfter);
+				}
+
+				recordFailure(host);
+				if (attempt >= options.retries)
+				{
+					throw failure;
+				}
+				sleep(delay);
+			}
+			finally
+			{
+				// a trial request ends with the attempt, even if it failed
+				// unexpectedly
+				if (circuit != null)
+				{
+					circuit.endTrial();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Whether requests responded with the given error status are
+	 *         retried. Default: server errors, <code>408 Request Timeout</code>
+	 *         and <code>429 Too Many Requests</code>.
+	 */
+	protected boolean isRetryable(int statusCode)
+	{
+		return statusCode >= HttpURLConnection.HTTP_INTERNAL_ERROR
+				|| statusCode == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+				|| statusCode == 429;
+	}
+
+	/**
+	 * @return The delay before the retry following the given attempt in
+	 *         milliseconds, including jitter.
+	 */
+	protected long getBackoffMillis(int attempt)
+	{
+		double backoff = Math.min(
+				this.maxBackoffMillis,
+				this.initialBackoffMillis * Math.pow(this.multiplier, attempt));
+		double random = ThreadLocalRandom.current().nextDouble();
+		return (long) (backoff * (1 - this.jitter * random));
+	}
+
+	/** Records a failed attempt for the circuit breaker of the host. */
+	private void recordFailure(String host)
+	{
+		if (this.failureThreshold <= 0)
+		{
+			return;
+		}
+
+		long now = System.nanoTime();
+		long openNanos = TimeUnit.MILLISECONDS.toNanos(this.openMillis);
+		evictIdleCircuits(host, now, openNanos);
+
+		Circuit circuit = this.circuits.get(host);
+		if (circuit == null)
+		{
+			circuit = new Circuit();
+			Circuit existing = this.circuits.putIfAbsent(host, circuit);
+			if (existing != null)
+			{
+				circuit = existing;
+			}
+		}
+		circuit.recordFailure(now, this.failureThreshold, openNanos);
+	}
+
+	/**
+	 * Removes the circuits of hosts other than the given one without failed
+	 * attempts for the open time, i.e. closed circuits of hosts that recovered
+	 * or are not requested anymore and expired open circuits. Runs at most
+	 * once per open time.
+	 */
+	private void evictIdleCircuits(String host, long now, long openNanos)
+	{
+		long due = this.nextEviction.get();
+		if (now - due < 0 || !this.nextEviction.compareAndSet(due, now + openNanos))
+		{
+			return;
+		}
+
+		for (Map.Entry<String, Circuit> entry : this.circuits.entrySet())
+		{
+			if (!entry.getKey().equals(host)
+					&& entry.getValue().isIdle(now, openNanos))
+			{
+				this.circuits.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/** @return The amount of hosts with a circuit breaker. */
+	/* package */int getCircuitCount()
+	{
+		return this.circuits.size();
+	}
+
+	/**
+	 * @return The delay requested by the <code>Retry-After</code> header of
+	 *         the response in milliseconds or <code>0</code> if none.
+	 */
+	private static long getRetryAfterMillis(FetchResponse response)
+	{
+		return parseRetryAfter(
+				response.getHeader("Retry-After"), //$NON-NLS-1$
+				System.currentTimeMillis());
+	}
+
+	/**
+	 * @return The delay of a <code>Retry-After</code> header value, which is
+	 *         either in seconds or an HTTP date, in milliseconds relative to
+	 *         the given time or <code>0</code> if the value is missing or
+	 *         malformed.
+	 */
+	/* package */static long parseRetryAfter(String value, long nowMillis)
+	{
+		if (value == null)
+		{
+			return 0;
+		}
+
+		value = value.trim();
+		try
+		{
+			return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value)));
+		}
+		catch (NumberFormatException e)
+		{
+			// try date format
+		}
+
+		try
+		{
+			long date = ZonedDateTime.parse(
+					value,
+					DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+			return Math.max(0, date - nowMillis);
+		}
+		catch (DateTimeParseException e)
+		{
+			return 0;
+		}
+	}
+
+	/** @return The key of the circuit breaker for the URL. */
+	private static String getCircuitKey(String url)
+	{
+		try
+		{
+			return new URL(url).getAuthority();
+		}
+		catch (MalformedURLException e)
+		{
+			return url;
+		}
+	}
+
+	/** Sleeps for the given delay before retrying. */
+	private static void sleep(long delayMillis) throws IOException
+	{
+		try
+		{
+			Thread.sleep(delayMillis);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while retrying"); //$NON-NLS-1$
+		}
+	}
+
+	/** The circuit breaker of a host. */
+	private static class Circuit
+	{
+		/** The amount of consecutive failed attempts. */
+		private int failures = 0;
+
+		/** The time of the last failed attempt. */
+		private long lastFailure = 0;
+
+		/** The time till the circuit is open. */
+		private long openUntil = 0;
+
+		/**
+		 * The thread sending the trial request of a half-open circuit or
+		 * <code>null</code>.
+		 */
+		private Thread trial = null;
+
+		/**
+		 * @return Whether a request may be sent, i.e. the circuit is closed or
+		 *         a trial request of a half-open circuit is due, which is then
+		 *         sent by the current thread.
+		 */
+		private synchronized boolean allowRequest(long now)
+		{
+			if (this.openUntil == 0)
+			{
+				return true;
+			}
+			if (now - this.openUntil < 0 || this.trial != null)
+			{
+				return false;
+			}
+			this.trial = Thread.currentThread();
+			return true;
+		}
+
+		/**
+		 * Ends the trial request if sent by the current thread, so the next
+		 * request is a trial again unless the circuit has been removed.
+		 */
+		private synchronized void endTrial()
+		{
+			if (this.trial == Thread.currentThread())
+			{
+				this.trial = null;
+			}
+		}
+
+		/** Records a failed attempt and opens the circuit if exceeded. */
+		private synchronized void recordFailure(
+				long now,
+				int threshold,
+				long openNanos)
+		{
+			this.failures++;
+			this.lastFailure = now;
+			this.trial = null;
+			if (this.failures >= threshold)
+			{
+				// avoid 0, which denotes a closed circuit
+				this.openUntil = (now + openNanos) | 1;
+			}
+		}
+
+		/**
+		 * @return Whether no trial is running and the last failed attempt is
+		 *         at least the open time ago.
+		 */
+		private synchronized boolean isIdle(long now, long openNanos)
+		{
+			return this.trial == null && now - this.lastFailure >= openNanos;
+		}
+	}
+}
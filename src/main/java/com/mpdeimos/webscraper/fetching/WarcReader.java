@@ -0,0 +1,438 @@
+package com.mpdeimos.webscraper.fetching;
+
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.ScraperSource;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+
+import org.jsoup.nodes.Element;
+
+/**
+ * Streams the <code>response</code> records of a WARC file (ISO 28500) as
+ * {@link ScraperSource}s, e.g. for scraping responses recorded with
+ * {@link WarcWriter} again without downloading them. Records are read one at a
+ * time, so archives need not fit into memory. Gzip-compressed archives with
+ * one member per record are detected automatically. Chunked transfer encoding
+ * and gzip or deflate content encoding of recorded bodies are decoded.
+ * <p>
+ * I/O errors while iterating are thrown as {@link UncheckedIOException}. The
+ * reader must be closed after iterating, or the stream after consuming it.
+ *
+ * @author mpdeimos
+ */
+public class WarcReader implements Iterator<WarcReader.Record>, Closeable
+{
+	/** The charset of WARC and HTTP headers. */
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	/** The buffer size for reading the archive. */
+	private static final int BUFFER_SIZE = 65536;
+
+	/** The stream of the archive. */
+	private final InputStream in;
+
+	/** The next record or <code>null</code> if not read yet. */
+	private Record next = null;
+
+	/** Flag whether the end of the archive has been reached. */
+	private boolean done = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param path
+	 *            The WARC file, which may be gzip-compressed.
+	 */
+	public WarcReader(Path path) throws IOException
+	{
+		InputStream stream = new BufferedInputStream(
+				Files.newInputStream(path),
+				BUFFER_SIZE);
+		try
+		{
+			stream.mark(2);
+			boolean gzip = stream.read() == 0x1f && stream.read() == 0x8b;
+			stream.reset();
+			if (gzip)
+			{
+				stream = new BufferedInputStream(new GZIPInputStream(
+						stream,
+						BUFFER_SIZE), BUFFER_SIZE);
+			}
+		}
+		catch (IOException e)
+		{
+			stream.close();
+			throw e;
+		}
+		this.in = stream;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean hasNext()
+	{
+		if (this.next == null && !this.done)
+		{
+			try
+			{
+				this.next = readRecord();
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			this.done = this.next == null;
+		}
+		return this.next != null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Record next()
+	{
+		if (!hasNext())
+		{
+			throw new NoSuchElementException();
+		}
+		Record record = this.next;
+		this.next = null;
+		return record;
+	}
+
+	/**
+	 * @return A sequential stream of the remaining records, which closes this
+	 *         reader when closed.
+	 */
+	public Stream<Record> stream()
+	{
+		Stream<Record> stream = StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED
+						| Spliterator.NONNULL), false);
+		return stream.onClose(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					close();
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() throws IOException
+	{
+		this.done = true;
+		this.next = null;
+		this.in.close();
+	}
+
+	/**
+	 * @return The next response record or <code>null</code> at the end of the
+	 *         archive. Other records are skipped.
+	 */
+	private Record readRecord() throws IOException
+	{
+		while (true)
+		{
+			String version = readLine(this.in);
+			while (version != null && version.isEmpty())
+			{
+				version = readLine(this.in);
+			}
+			if (version == null)
+			{
+				return null;
+			}
+			if (!version.startsWith("WARC/")) //$NON-NLS-1$
+			{
+				throw new IOException("Invalid WARC record: " + version); //$NON-NLS-1$
+			}
+
+			Map<String, List<String>> headers = readHeaders(this.in);
+			String length = getHeader(headers, "Content-Length"); //$NON-NLS-1$
+			if (length == null)
+			{
+				throw new IOException("WARC record without Content-Length"); //$NON-NLS-1$
+			}
+
+			String type = getHeader(headers, "WARC-Type"); //$NON-NLS-1$
+			String url = getHeader(headers, "WARC-Target-URI"); //$NON-NLS-1$
+			if (!"response".equals(type) || url == null) //$NON-NLS-1$
+			{
+				skipFully(this.in, Long.parseLong(length.trim()));
+				continue;
+			}
+
+			byte[] block = new byte[Integer.parseInt(length.trim())];
+			readFully(this.in, block);
+			return new Record(parseResponse(stripBrackets(url), block));
+		}
+	}
+
+	/** @return The response of an HTTP response block. */
+	private static FetchResponse parseResponse(String url, byte[] block)
+			throws IOException
+	{
+		InputStream stream = new ByteArrayInputStream(block);
+		String statusLine = readLine(stream);
+		String[] status = statusLine == null ? new String[0] : statusLine.split(
+				" ", //$NON-NLS-1$
+				3);
+		if (status.length < 2 || !status[0].startsWith("HTTP/")) //$NON-NLS-1$
+		{
+			throw new IOException("Invalid HTTP response of " + url); //$NON-NLS-1$
+		}
+		int statusCode;
+		try
+		{
+			statusCode = Integer.parseInt(status[1]);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IOException("Invalid HTTP status of " + url, e); //$NON-NLS-1$
+		}
+
+		Map<String, List<String>> headers = readHeaders(stream);
+		if ("chunked".equalsIgnoreCase(getHeader(headers, "Transfer-Encoding"))) //$NON-NLS-1$ //$NON-NLS-2$
+		{
+			stream = new ByteArrayInputStream(dechunk(stream));
+			headers.remove("Transfer-Encoding"); //$NON-NLS-1$
+		}
+		String encoding = getHeader(headers, "Content-Encoding"); //$NON-NLS-1$
+		byte[] body = DefaultFetcher.readFully(DefaultFetcher.decode(
+				stream,
+				encoding));
+		if (encoding != null)
+		{
+			headers.remove("Content-Encoding"); //$NON-NLS-1$
+			headers.remove("Content-Length"); //$NON-NLS-1$
+		}
+		return new FetchResponse(url, statusCode, headers, body);
+	}
+
+	/** @return The body of a chunked transfer encoded stream. */
+	private static byte[] dechunk(InputStream stream) throws IOException
+	{
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		while (true)
+		{
+			String line = readLine(stream);
+			if (line == null)
+			{
+				// truncated record
+				return body.toByteArray();
+			}
+			int extension = line.indexOf(';');
+			if (extension >= 0)
+			{
+				line = line.substring(0, extension);
+			}
+			int size;
+			try
+			{
+				size = Integer.parseInt(line.trim(), 16);
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IOException("Invalid chunk size: " + line, e); //$NON-NLS-1$
+			}
+			if (size == 0)
+			{
+				return body.toByteArray();
+			}
+
+			byte[] chunk = new byte[size];
+			readFully(stream, chunk);
+			body.write(chunk);
+			readLine(stream);
+		}
+	}
+
+	/**
+	 * @return The header lines up to the next empty line, with
+	 *         case-insensitive names.
+	 */
+	private static Map<String, List<String>> readHeaders(InputStream stream)
+			throws IOException
+	{
+		Map<String, List<String>> headers = new TreeMap<String, List<String>>(
+				String.CASE_INSENSITIVE_ORDER);
+		String line;
+		while ((line = readLine(stream)) != null && !line.isEmpty())
+		{
+			int colon = line.indexOf(':');
+			if (colon <= 0)
+			{
+				continue;
+			}
+			String name = line.substring(0, colon).trim();
+			List<String> values = headers.get(name);
+			if (values == null)
+			{
+				values = new ArrayList<String>(1);
+				headers.put(name, values);
+			}
+			values.add(line.substring(colon + 1).trim());
+		}
+		return headers;
+	}
+
+	/** @return The first value of the header or <code>null</code>. */
+	private static String getHeader(
+			Map<String, List<String>> headers,
+			String name)
+	{
+		List<String> values = headers.get(name);
+		if (values == null || values.isEmpty())
+		{
+			return null;
+		}
+		return values.get(0);
+	}
+
+	/**
+	 * @return The URI without the angle brackets of the WARC/1.1 draft
+	 *         syntax, which some tools write.
+	 */
+	private static String stripBrackets(String uri)
+	{
+		if (uri.startsWith("<") && uri.endsWith(">")) //$NON-NLS-1$ //$NON-NLS-2$
+		{
+			return uri.substring(1, uri.length() - 1);
+		}
+		return uri;
+	}
+
+	/**
+	 * @return The next line terminated by LF or CRLF without its terminator,
+	 *         or <code>null</code> at the end of the stream.
+	 */
+	private static String readLine(InputStream stream) throws IOException
+	{
+		ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+		int read;
+		while ((read = stream.read()) != -1 && read != '\n')
+		{
+			line.write(read);
+		}
+		if (read == -1 && line.size() == 0)
+		{
+			return null;
+		}
+
+		byte[] bytes = line.toByteArray();
+		int length = bytes.length;
+		if (length > 0 && bytes[length - 1] == '\r')
+		{
+			length--;
+		}
+		return new String(bytes, 0, length, UTF8);
+	}
+
+	/** Fills the buffer from the stream. */
+	private static void readFully(InputStream stream, byte[] buffer)
+			throws IOException
+	{
+		int offset = 0;
+		while (offset < buffer.length)
+		{
+			int read = stream.read(buffer, offset, buffer.length - offset);
+			if (read == -1)
+			{
+				throw new EOFException("Truncated WARC record"); //$NON-NLS-1$
+			}
+			offset += read;
+		}
+	}
+
+	/** Skips the given amount of bytes of the stream. */
+	private static void skipFully(InputStream stream, long bytes)
+			throws IOException
+	{
+		while (bytes > 0)
+		{
+			long skipped = stream.skip(bytes);
+			if (skipped <= 0)
+			{
+				if (stream.read() == -1)
+				{
+					throw new EOFException("Truncated WARC record"); //$NON-NLS-1$
+				}
+				skipped = 1;
+			}
+			bytes -= skipped;
+		}
+	}
+
+	/**
+	 * ScraperSource of a recorded response. The document is parsed when
+	 * scraped, so staged scrapers parse on their scrape stage.
+	 */
+	public static class Record extends ScraperSource
+	{
+		/** The recorded response. */
+		private final FetchResponse response;
+
+		/** Constructor. */
+		private Record(FetchResponse response)
+		{
+			this.response = response;
+		}
+
+		/** @return The recorded URL. */
+		public String getUrl()
+		{
+			return this.response.getUrl();
+		}
+
+		/** @return The recorded response. */
+		public FetchResponse getResponse()
+		{
+			return this.response;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Element getElement() throws ScraperException
+		{
+			try
+			{
+				return this.response.parse();
+			}
+			catch (IOException e)
+			{
+				throw new ScraperException("Could not parse website", e); //$NON-NLS-1$
+			}
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package com.mpdeimos.webscraper.fetching;
+
+import com.mpdeimos.webscraper.ScraperSource.ConnectionOptions;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@link Fetcher} recording all fetched responses to a WARC file (ISO 28500,
+ * WARC/1.0), e.g. for scraping them again offline with {@link WarcReader}.
+ * Each response is written as a <code>response</code> record holding the
+ * status line, the headers and the decoded body, so content encoding headers
+ * are dropped. If compressed, each record is a separate gzip member, as
+ * common for <code>.warc.gz</code> files.
+ * <p>
+ * Records are appended to existing files. The writer may be shared by
+ * concurrent scrapes and must be closed after scraping.
+ *
+ * @author mpdeimos
+ */
+public class WarcWriter implements Fetcher, Closeable
+{
+	/** The charset of WARC and HTTP headers. */
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	/** Line separator of WARC and HTTP headers. */
+	private static final String CRLF = "\r\n"; //$NON-NLS-1$
+
+	/** The fetcher downloading the recorded responses. */
+	private final Fetcher delegate;
+
+	/** The stream of the WARC file. Guarded by this. */
+	private final OutputStream out;
+
+	/** Flag whether records are gzip-compressed. */
+	private final boolean compress;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param delegate
+	 *            The fetcher downloading the recorded responses.
+	 * @param path
+	 *            The WARC file, which is created if not existing.
+	 * @param compress
+	 *            Whether each record is gzip-compressed.
+	 */
+	public WarcWriter(Fetcher delegate, Path path, boolean compress)
+			throws IOException
+	{
+		this.delegate = delegate;
+		this.compress = compress;
+		this.out = new BufferedOutputStream(Files.newOutputStream(
+				path,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public FetchResponse fetch(
+			String url,
+			Map<String, String> headers,
+			ConnectionOptions options) throws IOException
+	{
+		FetchResponse response = this.delegate.fetch(url, headers, options);
+		write(response);
+		return response;
+	}
+
+	/** Appends a response record of the response. */
+	public void write(FetchResponse response) throws IOException
+	{
+		ByteArrayOutputStream block = new ByteArrayOutputStream(
+				response.getBody().length + 1024);
+		StringBuilder httpHeader = new StringBuilder();
+		httpHeader.append("HTTP/1.1 ").append(response.getStatusCode()).append(" ").append(CRLF); //$NON-NLS-1$ //$NON-NLS-2$
+		for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet())
+		{
+			String name = header.getKey();
+			if (name.equalsIgnoreCase("Content-Encoding") //$NON-NLS-1$
+					|| name.equalsIgnoreCase("Content-Length") //$NON-NLS-1$
+					|| name.equalsIgnoreCase("Transfer-Encoding")) //$NON-NLS-1$
+			{
+				continue;
+			}
+			for (String value : header.getValue())
+			{
+				httpHeader.append(name).append(": ").append(value).append(CRLF); //$NON-NLS-1$
+			}
+		}
+		httpHeader.append("Content-Length: ").append(response.getBody().length).append(CRLF); //$NON-NLS-1$
+		httpHeader.append(CRLF);
+		block.write(httpHeader.toString().getBytes(UTF8));
+		block.write(response.getBody());
+
+		StringBuilder warcHeader = new StringBuilder();
+		warcHeader.append("WARC/1.0").append(CRLF); //$NON-NLS-1$
+		warcHeader.append("WARC-Type: response").append(CRLF); //$NON-NLS-1$
+		warcHeader.append("WARC-Target-URI: ").append(response.getUrl()).append(CRLF); //$NON-NLS-1$
+		warcHeader.append("WARC-Date: ").append( //$NON-NLS-1$
+				DateTimeFormatter.ISO_INSTANT.format(Instant.now().truncatedTo(
+						ChronoUnit.SECONDS))).append(CRLF);
+		warcHeader.append("WARC-Record-ID: <urn:uuid:").append( //$NON-NLS-1$
+				UUID.randomUUID()).append(">").append(CRLF); //$NON-NLS-1$
+		warcHeader.append("Content-Type: application/http; msgtype=response").append(CRLF); //$NON-NLS-1$
+		warcHeader.append("Content-Length: ").append(block.size()).append(CRLF); //$NON-NLS-1$
+		warcHeader.append(CRLF);
+
+		synchronized (this)
+		{
+			OutputStream record = new RecordOutputStream(this.out);
+			if (this.compress)
+			{
+				record = new GZIPOutputStream(record);
+			}
+
+			record.write(warcHeader.toString().getBytes(UTF8));
+			block.writeTo(record);
+			record.write((CRLF + CRLF).getBytes(UTF8));
+			record.close();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		this.out.close();
+	}
+
+	/**
+	 * Stream of a single record, which flushes the file instead of closing
+	 * it.
+	 */
+	private static class RecordOutputStream extends FilterOutputStream
+	{
+		/** Constructor. */
+		private RecordOutputStream(OutputStream out)
+		{
+			super(out);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			this.out.write(b, off, len);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void close() throws IOException
+		{
+			this.out.flush();
+		}
+	}
+}
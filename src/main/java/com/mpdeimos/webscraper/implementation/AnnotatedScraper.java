@@ -6,22 +6,24 @@ import com.mpdeimos.webscraper.ScraperException;
 import com.mpdeimos.webscraper.ScraperSource;
 import com.mpdeimos.webscraper.ScraperSource.ScraperSourceProvider;
 import com.mpdeimos.webscraper.conversion.Converter;
+import com.mpdeimos.webscraper.implementation.ScrapePlan.FieldPlan;
 import com.mpdeimos.webscraper.selection.Selector;
-import com.mpdeimos.webscraper.util.Assert;
 import com.mpdeimos.webscraper.util.Strings;
 import com.mpdeimos.webscraper.validation.Validator;
 import com.mpdeimos.webscraper.validation.Validator.ScraperValidationException;
 
-import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.jsoup.nodes.Element;
+import org.jsoup.select.Collector;
 import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
 
 /**
  * Main class for scraping HTML documents to annotated java objects. For
@@ -53,42 +55,111 @@ public class AnnotatedScraper extends Scraper
 	{
 		final Element root = this.source.getElement();
 
-		for (final Field field : getAcessibleAnnotatedFields(this.target))
-		{
-			AnnotatedScraperContext context = new AnnotatedScraperContext(
-					field);
-			scrapeField(context, root);
-		}
+		List<FieldPlan> fields = ScrapePlan.forClass(this.target.getClass()).getFields();
+		scrapeFields(fields, root, this.target);
 	}
 
 	/**
-	 * Scrapes the data from the document and assigns it to the target field.
+	 * Scrapes the data of the given fields from the document to the target.
+	 * The root selectors of all fields run first, and the CSS queries of all
+	 * fields sharing the same root element are evaluated with a single
+	 * traversal of the root element. Then each field is extracted, validated,
+	 * converted and assigned in turn, so if a field fails, the preceding
+	 * fields have been assigned and the following ones have not.
 	 */
-	private void scrapeField(AnnotatedScraperContext context, Element root)
+	private static void scrapeFields(
+			List<FieldPlan> fields,
+			Element root,
+			Object target)
 			throws ScraperException
 	{
-		updateRootElement(context, root);
-		Elements elements = context.getRootElement().select(
-				context.getConfiguration().value());
+		AnnotatedScraperContext[] contexts = new AnnotatedScraperContext[fields.size()];
+		Map<Element, List<Integer>> fieldsByRoot = new IdentityHashMap<Element, List<Integer>>();
+		for (int i = 0; i < contexts.length; i++)
+		{
+			contexts[i] = new AnnotatedScraperContext(fields.get(i));
+			updateRootElement(contexts[i], root);
+
+			List<Integer> group = fieldsByRoot.get(contexts[i].getRootElement());
+			if (group == null)
+			{
+				group = new ArrayList<Integer>();
+				fieldsByRoot.put(contexts[i].getRootElement(), group);
+			}
+			group.add(i);
+		}
 
-		final Object data = extractDataFromElements(context, elements);
+		Elements[] elements = new Elements[contexts.length];
+		for (Entry<Element, List<Integer>> group : fieldsByRoot.entrySet())
+		{
+			collectElements(group.getKey(), group.getValue(), fields, elements);
+		}
 
-		if (data != null)
+		for (int i = 0; i < contexts.length; i++)
 		{
-			setFieldData(context.getTargetField(), data);
+			Object data = extractDataFromElements(contexts[i], elements[i]);
+			if (data != null)
+			{
+				fields.get(i).getWriter().set(target, data);
+			}
+		}
+	}
+
+	/**
+	 * Collects the elements matching the CSS queries of a group of fields
+	 * sharing the same root element.
+	 */
+	private static void collectElements(
+			Element root,
+			List<Integer> group,
+			List<FieldPlan> fields,
+			Elements[] elements)
+	{
+		if (group.size() == 1)
+		{
+			int index = group.get(0);
+			elements[index] = Collector.collect(
+					fields.get(index).getQuery(),
+					root);
+			return;
+		}
+
+		Evaluator[] queries = new Evaluator[group.size()];
+		for (int i = 0; i < queries.length; i++)
+		{
+			queries[i] = fields.get(group.get(i)).getQuery();
+		}
+		Elements[] matches = MultiCollector.collect(queries, root);
+		for (int i = 0; i < matches.length; i++)
+		{
+			elements[group.get(i)] = matches[i];
 		}
 	}
 
 	/** Extracts the data for a list of elements returned by a CSS query. */
-	private Object extractDataFromElements(
+	private static Object extractDataFromElements(
 			AnnotatedScraperContext context,
 			Elements elements)
 			throws ScraperException
 	{
-		if (context.getTargetType().isArray())
+		if (context.getPlan().isArray())
+		{
+			context.setTargetType(context.getPlan().getElementType());
+		}
+
+		if (context.getPlan().isPrimitiveArray())
 		{
-			context.setTargetType(context.getTargetType().getComponentType());
+			return extractPrimitiveDataFromElements(context, elements);
+		}
 
+		if (context.getPlan().isParallel() && elements.size() > 1)
+		{
+			return context.getPlan().getWriter().newArray(
+					ParallelConversion.extractData(context, elements));
+		}
+
+		if (context.getPlan().isArray())
+		{
 			List<Object> dataList = new ArrayList<Object>();
 
 			for (Element element : elements)
@@ -102,15 +173,7 @@ public class AnnotatedScraper extends Scraper
 				}
 			}
 
-			Object array = Array.newInstance(
-					context.getTargetType(),
-					dataList.size());
-			for (int i = 0; i < dataList.size(); i++)
-			{
-				Array.set(array, i, dataList.get(i));
-			}
-
-			return array;
+			return context.getPlan().getWriter().newArray(dataList);
 		}
 
 		int resultIndex = context.getConfiguration().resultIndex();
@@ -142,37 +205,38 @@ public class AnnotatedScraper extends Scraper
 		return extractDataFromElement(context);
 	}
 
-	/** Extracts the data for one element returned by a CSS query. */
-	private Object extractDataFromElement(AnnotatedScraperContext context)
+	/**
+	 * Extracts the data for a list of elements directly to a primitive array,
+	 * skipping the converter.
+	 */
+	private static Object extractPrimitiveDataFromElements(
+			AnnotatedScraperContext context,
+			Elements elements)
 			throws ScraperException
 	{
-		context.setSourceText(extractTextData(context));
-
-		Scrape config = context.getConfiguration();
-		if (!config.regex().isEmpty())
+		PrimitiveArrayBuilder builder = PrimitiveArrayBuilder.create(
+				context.getTargetType(),
+				elements.size());
+		for (Element element : elements)
 		{
-			Pattern compile = Pattern.compile(config.regex());
-			Matcher matcher = compile.matcher(context.getSourceText());
-			if (matcher.matches())
+			context.setSourceElement(element);
+			if (extractSourceText(context))
 			{
-				context.setSourceText(matcher.replaceAll(config.replace()));
+				builder.add(context.getSourceText());
 			}
 		}
+		return builder.build();
+	}
 
-		if (config.trim())
-		{
-			context.setSourceText(context.getSourceText().replace(
-					Strings.NONBREAKING_SPACE,
-					Strings.SPACE).replaceAll("\\s+", Strings.SPACE).trim()); //$NON-NLS-1$
-		}
-
-		if (context.getSourceText().isEmpty() && !config.empty())
+	/** Extracts the data for one element returned by a CSS query. */
+	/* package */static Object extractDataFromElement(AnnotatedScraperContext context)
+			throws ScraperException
+	{
+		if (!extractSourceText(context))
 		{
 			return null;
 		}
 
-		validate(context);
-
 		Object converted = convert(context);
 		if (converted != null && converted instanceof ScraperSourceProvider)
 		{
@@ -183,119 +247,85 @@ public class AnnotatedScraper extends Scraper
 	}
 
 	/**
-	 * Extracts the text data from the element depending of the configuration of
-	 * the {@link Scrape} annotation.
+	 * Extracts the source text of the current source element, applies regex
+	 * replacement and trimming and validates the result.
+	 * 
+	 * @return <code>false</code> if the text is empty and empty values should
+	 *         not be assigned.
 	 */
-	private String extractTextData(AnnotatedScraperContext context)
+	private static boolean extractSourceText(AnnotatedScraperContext context)
+			throws ScraperException
 	{
-		String attribute = context.getConfiguration().attribute();
-		if (attribute.isEmpty())
+		context.setSourceText(extractTextData(context));
+
+		Scrape config = context.getConfiguration();
+		Pattern pattern = context.getPlan().getPattern();
+		if (pattern != null)
 		{
-			if (context.getConfiguration().ownText())
+			Matcher matcher = pattern.matcher(context.getSourceText());
+			if (matcher.matches())
 			{
-				return context.getSourceElement().ownText();
+				context.setSourceText(matcher.replaceAll(config.replace()));
 			}
-			return context.getSourceElement().text();
 		}
-		return context.getSourceElement().attr(attribute);
-	}
 
-	/** Sets the specified value to the field of the target object. */
-	private void setFieldData(final Field field, Object data)
-			throws ScraperException
-	{
-		try
-		{
-			field.set(this.target, data);
-		}
-		catch (IllegalArgumentException e)
+		if (config.trim())
 		{
-			throw new ScraperException("Cannot assign value to field '" //$NON-NLS-1$
-					+ field.getName() + "'", e); //$NON-NLS-1$
+			context.setSourceText(Strings.normalizeWhitespace(
+					context.getSourceText()));
 		}
-		catch (IllegalAccessException e)
+
+		if (context.getSourceText().isEmpty() && !config.empty())
 		{
-			Assert.notCaught(e, "just accessible fields are passed"); //$NON-NLS-1$
+			return false;
 		}
+
+		validate(context);
+		return true;
 	}
 
 	/**
-	 * @return All accessible (public & non-final) fields of the class and super
-	 *         classes having the {@link Scrape} annotation.
+	 * Extracts the text data from the element depending of the configuration of
+	 * the {@link Scrape} annotation.
 	 */
-	private static List<Field> getAcessibleAnnotatedFields(Object object)
+	private static String extractTextData(AnnotatedScraperContext context)
 	{
-		Class<?> clazz = object.getClass();
-		List<Field> fields = new ArrayList<Field>();
-		for (Field field : clazz.getFields())
+		String attribute = context.getConfiguration().attribute();
+		if (attribute.isEmpty())
 		{
-			int modifiers = field.getModifiers();
-			if (Modifier.isPublic(modifiers) && !Modifier.isFinal(modifiers)
-					&& field.isAnnotationPresent(Scrape.class))
+			if (context.getConfiguration().ownText())
 			{
-				fields.add(field);
+				return context.getSourceElement().ownText();
 			}
+			return context.getSourceElement().text();
 		}
-		return fields;
+		return context.getSourceElement().attr(attribute);
 	}
 
 	/** Gets the root element specified in the configuration. */
-	private void updateRootElement(
+	private static void updateRootElement(
 			AnnotatedScraperContext context,
 			Element root)
 			throws ScraperException
 	{
-		try
-		{
-			context.setRootElement(root);
-			Selector selector = context.getConfiguration().root().newInstance();
-			context.setRootElement(selector.select(context));
-		}
-		catch (InstantiationException e)
-		{
-			throw new ScraperException("Could not instantiate selector.", e); //$NON-NLS-1$
-		}
-		catch (IllegalAccessException e)
-		{
-			throw new ScraperException("Could not access selector.", e); //$NON-NLS-1$
-		}
+		context.setRootElement(root);
+		Selector selector = context.getPlan().getSelector().getInstance();
+		context.setRootElement(selector.select(context));
 	}
 
 	/** Validates the data with the specified validator. */
-	private void validate(AnnotatedScraperContext context)
+	private static void validate(AnnotatedScraperContext context)
 			throws ScraperValidationException, ScraperException
 	{
-		try
-		{
-			Validator validator = context.getConfiguration().validator().newInstance();
-			validator.validate(context);
-		}
-		catch (InstantiationException e)
-		{
-			throw new ScraperException("Could not instantiate validator.", e); //$NON-NLS-1$
-		}
-		catch (IllegalAccessException e)
-		{
-			throw new ScraperException("Could not access validator.", e); //$NON-NLS-1$
-		}
+		Validator validator = context.getPlan().getValidator().getInstance();
+		validator.validate(context);
 	}
 
 	/** Converts the data with the specified converter. */
-	private Object convert(AnnotatedScraperContext context)
+	private static Object convert(AnnotatedScraperContext context)
 			throws ScraperException
 	{
-		try
-		{
-			Converter convertor = context.getConfiguration().converter().newInstance();
-			return convertor.convert(context);
-		}
-		catch (InstantiationException e)
-		{
-			throw new ScraperException("Could not instantiate convertor.", e); //$NON-NLS-1$
-		}
-		catch (IllegalAccessException e)
-		{
-			throw new ScraperException("Could not access convertor.", e); //$NON-NLS-1$
-		}
+		Converter convertor = context.getPlan().getConverter().getInstance();
+		return convertor.convert(context);
 	}
 }
@@ -2,7 +2,9 @@ package com.mpdeimos.webscraper.implementation;
 
 import com.mpdeimos.webscraper.Scrape;
 import com.mpdeimos.webscraper.ScraperContext;
+import com.mpdeimos.webscraper.implementation.ScrapePlan.FieldPlan;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 
 import org.jsoup.nodes.Element;
@@ -15,21 +17,38 @@ import org.jsoup.nodes.Element;
  */
 /* package */class AnnotatedScraperContext extends ScraperContext
 {
-	/** The scraper configuration. */
-	private final Scrape configuration;
+	/** The compiled plan of the scraped field. */
+	private final FieldPlan plan;
 
 	/** Constructor. */
-	public AnnotatedScraperContext(Field field)
+	public AnnotatedScraperContext(FieldPlan plan)
 	{
-		this.targetField = field;
-		this.targetType = field.getType();
-		this.configuration = field.getAnnotation(Scrape.class);
+		this.plan = plan;
+		this.targetField = plan.getField();
+		this.targetType = plan.getField().getType();
+	}
+
+	/** @return The compiled plan of the scraped field. */
+	public FieldPlan getPlan()
+	{
+		return this.plan;
 	}
 
 	/** @return The scaper configuration. */
 	public Scrape getConfiguration()
 	{
-		return this.configuration;
+		return this.plan.getConfiguration();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public <A extends Annotation> A getOption(Class<A> optionType)
+	{
+		if (this.targetField != this.plan.getField())
+		{
+			return super.getOption(optionType);
+		}
+		return this.plan.getOption(optionType);
 	}
 
 	/** Sets the source element that has been selected by the CSS query. */
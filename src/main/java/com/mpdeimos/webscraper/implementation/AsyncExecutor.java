@@ -1,49 +1,131 @@
 package com.mpdeimos.webscraper.implementation;
 
+import com.mpdeimos.webscraper.PolitenessOptions;
 import com.mpdeimos.webscraper.ScraperException;
 import com.mpdeimos.webscraper.util.Assert;
 
-import java.util.ArrayList;
+import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 /**
  * Asynchronous executor of {@link Callable}s that can {@link #await()} all
  * scheduled tasks.
+ * <p>
+ * The executor either owns its thread pool, which is shut down after
+ * {@link #await()}, or schedules tasks on a shared pool that outlives the
+ * executor. In both cases {@link #await()} only waits for the tasks of this
+ * executor, so several executors can share a pool without interfering.
+ * <p>
+ * Tasks are tracked by a counter of unfinished tasks instead of their
+ * futures, so bookkeeping is constant per task and {@link #await()} wakes up
+ * on the last completion or the first failure, regardless of the order in
+ * which tasks were submitted. The first failure cancels all outstanding tasks.
+ * <p>
+ * Executors on a {@link ForkJoinPool} are structured: tasks scheduled from a
+ * pool worker are forked to the worker's queue and a nested scrape joins its
+ * own tasks instead of adding them to the outer batch. Joining workers execute
+ * pending tasks meanwhile and idle workers steal them, so nested scrapes are
+ * complete before the parent field is assigned without blocking the pool.
  * 
  * @author mpdeimos
  */
 public class AsyncExecutor
 {
-	/** The unique id provider of the executor. */
+	/** The unique id provider of thread pools. */
 	private static final AtomicInteger ID_PROVIDER = new AtomicInteger();
 
-	/** The unique id if the executor. */
-	private final int id = ID_PROVIDER.incrementAndGet();
+	/** The executor whose task is currently executed by a thread. */
+	private static final ThreadLocal<AsyncExecutor> CURRENT = new ThreadLocal<AsyncExecutor>();
+
+	/**
+	 * The completion tracking the task currently executed by a thread. Tasks
+	 * scheduled by the task are tracked by the same completion.
+	 */
+	private static final ThreadLocal<Completion<?>> COMPLETION = new ThreadLocal<Completion<?>>();
 
 	/** The executor service for scraping the document. */
 	private final ExecutorService executor;
 
+	/** Flag whether the executor service is owned by this executor. */
+	private final boolean owned;
+
+	/**
+	 * Limits the amount of concurrently running tasks or <code>null</code> if
+	 * the concurrency is limited by the executor service.
+	 */
+	private final Semaphore permits;
+
+	/**
+	 * Flag whether tasks are forked on a {@link ForkJoinPool} and nested
+	 * scrapes are joined in their own scope.
+	 */
+	private final boolean forkJoin;
+
+	/** The amount of submitted tasks that are not finished. */
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/** The first failure of a task. */
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
 	/**
-	 * The results of tasks added to the {@link #executor}. The collection is
-	 * thread safe.
+	 * The tasks that are submitted to a thread pool but not finished, which
+	 * are cancelled on the first failure.
 	 */
-	private final List<Future<Void>> futures = Collections.synchronizedList(
-			new ArrayList<Future<Void>>());
+	private final Set<Future<?>> outstanding = Collections.newSetFromMap(new ConcurrentHashMap<Future<?>, Boolean>());
+
+	/**
+	 * The tasks forked on a {@link ForkJoinPool}, which are joined by
+	 * {@link #await()} if called from a worker of the pool.
+	 */
+	private final Queue<ForkedTask> forked = new ConcurrentLinkedQueue<ForkedTask>();
+
+	/**
+	 * The scheduler of tasks of hosts or <code>null</code> if hosts are not
+	 * limited.
+	 */
+	private volatile HostScheduler hostScheduler = null;
+
+	/**
+	 * The executor cancelled on the first failure of this executor or
+	 * <code>null</code>.
+	 */
+	private volatile AsyncExecutor linked = null;
+
+	/** The monitor notified if all tasks are finished or a task failed. */
+	private final Object completionMonitor = new Object();
 
 	/** Constructor. */
-	private AsyncExecutor(int nThreads)
+	private AsyncExecutor(
+			ExecutorService executor,
+			boolean owned,
+			Semaphore permits)
 	{
-		this.executor = Executors.newFixedThreadPool(
-				nThreads, new AsyncExecutorThreadFactory());
+		this.executor = executor;
+		this.owned = owned;
+		this.permits = permits;
+		this.forkJoin = executor instanceof ForkJoinPool;
 	}
 
 	/**
@@ -51,52 +133,363 @@ public class AsyncExecutor
 	 */
 	public void async(Callable<Void> task)
 	{
-		this.futures.add(this.executor.submit(task));
+		asyncForHost(null, task);
 	}
 
 	/**
-	 * Waits till all asynchronous tasks are completed if called from any thread
-	 * but {@link AsyncExecutorThread}.
-	 * <p>
-	 * Thrown checked exception in async context are wrapped in
-	 * {@link ScraperException}s and rethrown. {@link RuntimeException}s,
-	 * {@link ScraperException}s and {@link Error}s are rethrown.
+	 * Submits a task to the underlying executor service.
+	 * 
+	 * @return A future completing with the given result as soon as the task
+	 *         and all tasks it schedules itself, e.g. for nested scrapes, are
+	 *         finished. It completes exceptionally with the first failure of
+	 *         these tasks.
 	 */
-	public void await() throws ScraperException
+	public <T> CompletableFuture<T> async(Callable<Void> task, T result)
+	{
+		return asyncForHost(null, task, result);
+	}
+
+	/**
+	 * Submits a task accessing the given host, which is scheduled within the
+	 * limits of {@link #setPoliteness(PolitenessOptions)}. If the host is
+	 * <code>null</code> or hosts are not limited, the task is submitted
+	 * directly.
+	 */
+	public void asyncForHost(String host, Callable<Void> task)
+	{
+		submit(task, COMPLETION.get(), host);
+	}
+
+	/**
+	 * Submits a task accessing the given host like
+	 * {@link #asyncForHost(String, Callable)}.
+	 * 
+	 * @return A future like {@link #async(Callable, Object)}.
+	 */
+	public <T> CompletableFuture<T> asyncForHost(
+			String host,
+			Callable<Void> task,
+			T result)
+	{
+		return asyncForHost(host, task, result, false);
+	}
+
+	/**
+	 * Submits a task accessing the given host like
+	 * {@link #asyncForHost(String, Callable)}.
+	 * 
+	 * @param isolated
+	 *            If <code>true</code>, failures of the task and the tasks it
+	 *            schedules itself only complete the returned future
+	 *            exceptionally, but neither cancel other tasks nor fail
+	 *            {@link #await()}.
+	 * @return A future like {@link #async(Callable, Object)}.
+	 */
+	public <T> CompletableFuture<T> asyncForHost(
+			String host,
+			Callable<Void> task,
+			T result,
+			boolean isolated)
+	{
+		Completion<T> completion = new Completion<T>(result, isolated);
+		submit(task, completion, host);
+		return completion.future;
+	}
+
+	/**
+	 * Tracks the given future like a task scheduled by the current task, so
+	 * {@link #await()} and the future of the current task wait for its
+	 * completion. A failure of the future is handled like a failure of such a
+	 * task.
+	 */
+	public void track(final CompletableFuture<?> future)
 	{
-		if (Thread.currentThread() instanceof AsyncExecutorThread)
+		this.pending.incrementAndGet();
+		final Completion<?> completion = COMPLETION.get();
+		if (completion != null)
 		{
-			return;
+			completion.pending.incrementAndGet();
 		}
 
-		while (!this.futures.isEmpty())
+		future.whenComplete(new BiConsumer<Object, Throwable>()
 		{
-			try
+			@Override
+			public void accept(Object result, Throwable failure)
 			{
-				this.futures.remove(0).get();
+				finished(future, completion, failure);
 			}
-			catch (InterruptedException e)
+		});
+	}
+
+	/**
+	 * Limits the tasks per host and the rate of tasks submitted for a host,
+	 * unless already limited. Has no effect on fork/join pools.
+	 */
+	public void setPoliteness(PolitenessOptions options)
+	{
+		synchronized (this.completionMonitor)
+		{
+			if (this.hostScheduler == null && !this.forkJoin)
 			{
-				throw new ScraperException("Scraper thread interruped", e); //$NON-NLS-1$
+				this.hostScheduler = new HostScheduler(this.executor, options);
 			}
-			catch (ExecutionException e)
+		}
+	}
+
+	/**
+	 * Schedules tasks of hosts with the host scheduler of the given executor,
+	 * so they share its politeness limits and run on its thread pool.
+	 */
+	public void shareHostScheduler(AsyncExecutor executor)
+	{
+		synchronized (this.completionMonitor)
+		{
+			this.hostScheduler = executor.hostScheduler;
+		}
+	}
+
+	/**
+	 * Submits a task to the underlying executor service, whose completion is
+	 * tracked by the given completion if not <code>null</code>. Tasks of a
+	 * host are passed to the {@link #hostScheduler} if hosts are limited.
+	 */
+	private void submit(
+			final Callable<Void> task,
+			Completion<?> completion,
+			String host)
+	{
+		this.pending.incrementAndGet();
+		if (completion != null)
+		{
+			completion.pending.incrementAndGet();
+		}
+
+		Callable<Void> scoped = new Callable<Void>()
+		{
+			@Override
+			public Void call() throws Exception
 			{
-				Throwable cause = e.getCause();
-				if (cause instanceof ScraperException)
+				acquirePermit();
+				TaskContext previous = new TaskContext(
+						AsyncExecutor.this,
+						completion).attach();
+				try
 				{
-					throw (ScraperException) cause;
+					return task.call();
 				}
-				if (cause instanceof Error)
+				finally
 				{
-					throw (Error) cause;
+					previous.attach();
+					if (AsyncExecutor.this.permits != null)
+					{
+						AsyncExecutor.this.permits.release();
+					}
 				}
-				if (cause instanceof RuntimeException)
+			}
+		};
+
+		if (!this.forkJoin)
+		{
+			TrackedTask tracked = new TrackedTask(scoped, completion);
+			this.outstanding.add(tracked);
+			HostScheduler scheduler = this.hostScheduler;
+			if (host != null && scheduler != null)
+			{
+				scheduler.execute(host, tracked);
+			}
+			else
+			{
+				this.executor.execute(tracked);
+			}
+			return;
+		}
+
+		ForkedTask forked = new ForkedTask(scoped, completion);
+		this.forked.add(forked);
+		Thread thread = Thread.currentThread();
+		if (thread instanceof ForkJoinWorkerThread
+				&& ((ForkJoinWorkerThread) thread).getPool() == this.executor)
+		{
+			forked.fork();
+		}
+		else
+		{
+			((ForkJoinPool) this.executor).execute(forked);
+		}
+	}
+
+	/** @return Whether a task of this executor has failed. */
+	public boolean isFailed()
+	{
+		return this.failure.get() != null;
+	}
+
+	/**
+	 * Bookkeeping of a finished task. The first failure cancels all
+	 * outstanding tasks and wakes up {@link #await()}.
+	 * 
+	 * @param failure
+	 *            The failure of the task or <code>null</code> if it
+	 *            succeeded.
+	 */
+	private void finished(
+			Future<?> task,
+			Completion<?> completion,
+			Throwable failure)
+	{
+		this.outstanding.remove(task);
+		if (completion != null)
+		{
+			completion.done(failure);
+		}
+
+		if (failure != null && (completion == null || !completion.isolated))
+		{
+			cancel(failure);
+		}
+
+		if (this.pending.decrementAndGet() == 0)
+		{
+			synchronized (this.completionMonitor)
+			{
+				this.completionMonitor.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Fails this executor with the given cause unless it failed before. All
+	 * outstanding tasks are cancelled, {@link #await()} returns and rethrows
+	 * the cause and the linked executor (see {@link #cancelOnFailure}) is
+	 * cancelled as well.
+	 */
+	public void cancel(Throwable cause)
+	{
+		if (!this.failure.compareAndSet(null, cause))
+		{
+			return;
+		}
+
+		for (Future<?> outstandingTask : this.outstanding)
+		{
+			outstandingTask.cancel(true);
+		}
+		synchronized (this.completionMonitor)
+		{
+			this.completionMonitor.notifyAll();
+		}
+
+		AsyncExecutor linked = this.linked;
+		if (linked != null)
+		{
+			linked.cancel(cause);
+		}
+	}
+
+	/**
+	 * Links the given executor to this one, so it is cancelled with the first
+	 * failure of this executor.
+	 */
+	public void cancelOnFailure(AsyncExecutor executor)
+	{
+		if (executor != this)
+		{
+			this.linked = executor;
+		}
+	}
+
+	/** Blocks until the task may run if the concurrency is limited. */
+	private void acquirePermit() throws ScraperException
+	{
+		if (this.permits == null)
+		{
+			return;
+		}
+
+		try
+		{
+			this.permits.acquire();
+		}
+		catch (InterruptedException e)
+		{
+			throw new ScraperException("Scraper thread interruped", e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Waits till all asynchronous tasks are completed if not called from a
+	 * task of this executor. Returns as soon as a task fails, in which case
+	 * all outstanding tasks are cancelled.
+	 * <p>
+	 * Thrown checked exception in async context are wrapped in
+	 * {@link ScraperException}s and rethrown. {@link RuntimeException}s,
+	 * {@link ScraperException}s and {@link Error}s are rethrown.
+	 */
+	public void await() throws ScraperException
+	{
+		if (CURRENT.get() == this)
+		{
+			return;
+		}
+
+		try
+		{
+			joinForkedTasks();
+			synchronized (this.completionMonitor)
+			{
+				while (this.pending.get() > 0 && this.failure.get() == null)
 				{
-					throw (RuntimeException) cause;
+					this.completionMonitor.wait();
 				}
-				Assert.notCaught(cause, "Unexpected exception in async context"); //$NON-NLS-1$
 			}
 		}
+		catch (InterruptedException e)
+		{
+			throw new ScraperException("Scraper thread interruped", e); //$NON-NLS-1$
+		}
+		finally
+		{
+			this.forked.clear();
+			shutdownOwnedPool();
+		}
+
+		rethrow(this.failure.get());
+	}
+
+	/**
+	 * Joins the forked tasks if called from a worker of the fork/join pool,
+	 * so the worker executes pending tasks instead of blocking.
+	 */
+	private void joinForkedTasks()
+	{
+		Thread thread = Thread.currentThread();
+		if (!(thread instanceof ForkJoinWorkerThread)
+				|| ((ForkJoinWorkerThread) thread).getPool() != this.executor)
+		{
+			return;
+		}
+
+		ForkedTask task;
+		while (this.failure.get() == null
+				&& (task = this.forked.poll()) != null)
+		{
+			task.quietlyJoin();
+		}
+	}
+
+	/** Shuts down the thread pool if owned by this executor. */
+	private void shutdownOwnedPool()
+	{
+		if (!this.owned)
+		{
+			return;
+		}
+
+		if (this.failure.get() != null)
+		{
+			this.executor.shutdownNow();
+			return;
+		}
 
 		this.executor.shutdown();
 		try
@@ -111,41 +504,415 @@ public class AsyncExecutor
 	}
 
 	/**
-	 * Creates a new {@link AsyncExecutor} of uses the {@link AsyncExecutor} of
-	 * the current thread if the thread is a {@link AsyncExecutorThread}.
+	 * Non-blocking variant of {@link #await()} for tasks submitted with
+	 * {@link #async(Callable, Object)}.
+	 * 
+	 * @return A future completing when all of the given futures are
+	 *         completed. If not called from a task of this executor, an owned
+	 *         thread pool is shut down before.
+	 */
+	public CompletableFuture<Void> whenAll(
+			List<? extends CompletableFuture<?>> completions)
+	{
+		CompletableFuture<Void> all = CompletableFuture.allOf(completions.toArray(new CompletableFuture<?>[completions.size()]));
+		if (!this.owned || CURRENT.get() == this)
+		{
+			return all;
+		}
+
+		return all.whenComplete(new BiConsumer<Void, Throwable>()
+		{
+			@Override
+			public void accept(Void result, Throwable failure)
+			{
+				AsyncExecutor.this.executor.shutdown();
+			}
+		});
+	}
+
+	/**
+	 * Rethrows the exception of a failed task if not <code>null</code>.
+	 */
+	/* package */static void rethrow(Throwable cause) throws ScraperException
+	{
+		if (cause == null)
+		{
+			return;
+		}
+		if (cause instanceof ScraperException)
+		{
+			throw (ScraperException) cause;
+		}
+		if (cause instanceof Error)
+		{
+			throw (Error) cause;
+		}
+		if (cause instanceof RuntimeException)
+		{
+			throw (RuntimeException) cause;
+		}
+		Assert.notCaught(cause, "Unexpected exception in async context"); //$NON-NLS-1$
+	}
+
+	/**
+	 * @return The executor for scrapes started by a task of this executor,
+	 *         i.e. this executor or a new scope on the same fork/join pool.
+	 */
+	private AsyncExecutor nested()
+	{
+		if (!this.forkJoin)
+		{
+			return this;
+		}
+		return new AsyncExecutor(this.executor, false, null);
+	}
+
+	/**
+	 * @return Whether the current thread is executing a task of an
+	 *         {@link AsyncExecutor}, in which case the
+	 *         <code>createOrGetCurrent</code> methods use its executor.
+	 */
+	public static boolean isNested()
+	{
+		return CURRENT.get() != null;
+	}
+
+	/**
+	 * Creates a new {@link AsyncExecutor} with an own thread pool or uses the
+	 * {@link AsyncExecutor} of the current thread if the thread is executing a
+	 * task of an {@link AsyncExecutor}.
 	 */
 	public static AsyncExecutor createOrGetCurrent(int nThreads)
 	{
-		Thread thread = Thread.currentThread();
-		if (thread instanceof AsyncExecutorThread)
+		AsyncExecutor current = CURRENT.get();
+		if (current != null)
+		{
+			return current.nested();
+		}
+		return new AsyncExecutor(newThreadPool(nThreads), true, null);
+	}
+
+	/**
+	 * Creates a new {@link AsyncExecutor} on the given shared thread pool or
+	 * uses the {@link AsyncExecutor} of the current thread if the thread is
+	 * executing a task of an {@link AsyncExecutor}. The shared pool is not
+	 * shut down by the executor.
+	 */
+	public static AsyncExecutor createOrGetCurrent(ExecutorService sharedPool)
+	{
+		return createOrGetCurrent(sharedPool, false);
+	}
+
+	/**
+	 * Creates a new {@link AsyncExecutor} on the given thread pool or uses the
+	 * {@link AsyncExecutor} of the current thread if the thread is executing a
+	 * task of an {@link AsyncExecutor}.
+	 * 
+	 * @param owned
+	 *            Whether the pool is owned by the executor and shut down after
+	 *            {@link #await()}. An owned pool is shut down immediately if
+	 *            the current executor is used.
+	 */
+	public static AsyncExecutor createOrGetCurrent(
+			ExecutorService pool,
+			boolean owned)
+	{
+		AsyncExecutor current = CURRENT.get();
+		if (current != null)
+		{
+			if (owned)
+			{
+				pool.shutdown();
+			}
+			return current.nested();
+		}
+		return new AsyncExecutor(pool, owned, null);
+	}
+
+	/**
+	 * Creates a new {@link AsyncExecutor} that runs each task on its own
+	 * virtual thread with at most the given amount of tasks running
+	 * concurrently or uses the {@link AsyncExecutor} of the current thread if
+	 * the thread is executing a task of an {@link AsyncExecutor}.
+	 * <p>
+	 * On Java runtimes without virtual threads, tasks run on a fixed pool of
+	 * the given amount of platform threads instead.
+	 */
+	public static AsyncExecutor createOrGetCurrentVirtual(int maxConcurrency)
+	{
+		AsyncExecutor current = CURRENT.get();
+		if (current != null)
+		{
+			return current.nested();
+		}
+
+		ExecutorService pool = newVirtualThreadPool();
+		if (pool == null)
+		{
+			return new AsyncExecutor(newThreadPool(maxConcurrency), true, null);
+		}
+		return new AsyncExecutor(pool, true, new Semaphore(maxConcurrency));
+	}
+
+	/**
+	 * Creates a new {@link AsyncExecutor} with an own work-stealing
+	 * {@link ForkJoinPool} of the given parallelism or uses the
+	 * {@link AsyncExecutor} of the current thread if the thread is executing a
+	 * task of an {@link AsyncExecutor}.
+	 */
+	public static AsyncExecutor createOrGetCurrentForkJoin(int parallelism)
+	{
+		AsyncExecutor current = CURRENT.get();
+		if (current != null)
 		{
-			return ((AsyncExecutorThread) thread).getAsyncExecutor();
+			return current.nested();
 		}
-		return new AsyncExecutor(nThreads);
+		return new AsyncExecutor(new ForkJoinPool(parallelism), true, null);
 	}
 
-	/** A {@link Thread} created by an {@link AsyncExecutor}. */
-	private class AsyncExecutorThread extends Thread
+	/**
+	 * Creates an executor service starting a new virtual thread per task.
+	 * 
+	 * @return The executor service or <code>null</code> if virtual threads
+	 *         are not supported by the runtime.
+	 */
+	private static ExecutorService newVirtualThreadPool()
 	{
+		Method factory;
+		try
+		{
+			factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor"); //$NON-NLS-1$
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+
+		try
+		{
+			return (ExecutorService) factory.invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalStateException(
+					"Could not create virtual thread executor", e); //$NON-NLS-1$
+		}
+	}
+
+	/** Creates a new fixed size thread pool with named threads. */
+	public static ExecutorService newThreadPool(int nThreads)
+	{
+		return Executors.newFixedThreadPool(
+				nThreads,
+				new AsyncExecutorThreadFactory());
+	}
+
+	/**
+	 * Tracks the completion of a task and all tasks scheduled while executing
+	 * it.
+	 */
+	private static class Completion<T>
+	{
+		/** The amount of tracked tasks that are not finished. */
+		private final AtomicInteger pending = new AtomicInteger();
+
+		/** The first failure of a tracked task. */
+		private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		/** The result the future completes with. */
+		private final T result;
+
+		/** The future completing with the last tracked task. */
+		private final CompletableFuture<T> future = new CompletableFuture<T>();
+
+		/**
+		 * Flag whether failures of the tracked tasks are isolated from the
+		 * executor.
+		 */
+		private final boolean isolated;
+
+		/** Constructor. */
+		private Completion(T result, boolean isolated)
+		{
+			this.result = result;
+			this.isolated = isolated;
+		}
+
+		/**
+		 * Marks a tracked task as finished with the given failure or
+		 * <code>null</code> if it succeeded.
+		 */
+		private void done(Throwable failure)
+		{
+			if (failure != null)
+			{
+				this.failure.compareAndSet(null, failure);
+			}
+			if (this.pending.decrementAndGet() > 0)
+			{
+				return;
+			}
+
+			Throwable firstFailure = this.failure.get();
+			if (firstFailure == null)
+			{
+				this.future.complete(this.result);
+			}
+			else
+			{
+				this.future.completeExceptionally(firstFailure);
+			}
+		}
+	}
+
+	/**
+	 * The state of the task executed by a thread, which is transferred to
+	 * threads working on behalf of the task, e.g. when converting elements in
+	 * parallel.
+	 */
+	/* package */static class TaskContext
+	{
+		/** The executor of the task. */
+		private final AsyncExecutor executor;
+
+		/** The completion tracking the task. */
+		private final Completion<?> completion;
+
 		/** Constructor. */
-		private AsyncExecutorThread(Runnable r, String name)
+		private TaskContext(AsyncExecutor executor, Completion<?> completion)
 		{
-			super(r, name);
+			this.executor = executor;
+			this.completion = completion;
+		}
+
+		/** @return The context of the task executed by the current thread. */
+		public static TaskContext capture()
+		{
+			return new TaskContext(CURRENT.get(), COMPLETION.get());
 		}
 
 		/**
-		 * @return The {@link AsyncExecutor} that has created this
-		 *         {@link Thread}.
+		 * Makes this the context of the current thread.
+		 * 
+		 * @return The previous context of the thread, to be attached again
+		 *         afterwards.
 		 */
-		public AsyncExecutor getAsyncExecutor()
+		public TaskContext attach()
 		{
-			return AsyncExecutor.this;
+			TaskContext previous = capture();
+			set(CURRENT, this.executor);
+			set(COMPLETION, this.completion);
+			return previous;
+		}
+
+		/** Sets or removes the value of a thread local. */
+		private static <T> void set(ThreadLocal<T> local, T value)
+		{
+			if (value == null)
+			{
+				local.remove();
+			}
+			else
+			{
+				local.set(value);
+			}
 		}
 	}
 
-	/** Factory for {@link AsyncExecutorThread}s. */
-	private class AsyncExecutorThreadFactory implements ThreadFactory
+	/** Task on a thread pool reporting its completion to the executor. */
+	private class TrackedTask extends FutureTask<Void>
 	{
+		/** The completion tracking the task or <code>null</code>. */
+		private final Completion<?> completion;
+
+		/** Constructor. */
+		private TrackedTask(Callable<Void> task, Completion<?> completion)
+		{
+			super(task);
+			this.completion = completion;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		protected void done()
+		{
+			Throwable failure = null;
+			if (isCancelled())
+			{
+				failure = new CancellationException("Cancelled after failure of another task"); //$NON-NLS-1$
+			}
+			else
+			{
+				try
+				{
+					get();
+				}
+				catch (ExecutionException e)
+				{
+					failure = e.getCause();
+				}
+				catch (InterruptedException e)
+				{
+					Assert.notCaught(e, "The task is done already."); //$NON-NLS-1$
+				}
+			}
+			finished(this, this.completion, failure);
+		}
+	}
+
+	/**
+	 * Fork/join task executing a scraper task. Tasks that did not start before
+	 * the first failure of the executor are skipped, since fork/join tasks
+	 * cannot be interrupted.
+	 */
+	private class ForkedTask extends RecursiveAction
+	{
+		/** Serial version UID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The scraper task. */
+		private final Callable<Void> task;
+
+		/** The completion tracking the task or <code>null</code>. */
+		private final Completion<?> completion;
+
+		/** Constructor. */
+		private ForkedTask(Callable<Void> task, Completion<?> completion)
+		{
+			this.task = task;
+			this.completion = completion;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		protected void compute()
+		{
+			Throwable failure = null;
+			try
+			{
+				if (AsyncExecutor.this.failure.get() != null)
+				{
+					failure = new CancellationException("Skipped after failure of another task"); //$NON-NLS-1$
+				}
+				else
+				{
+					this.task.call();
+				}
+			}
+			catch (Throwable e)
+			{
+				failure = e;
+			}
+			finished(this, this.completion, failure);
+		}
+	}
+
+	/** Factory for named threads of an {@link AsyncExecutor} pool. */
+	private static class AsyncExecutorThreadFactory implements ThreadFactory
+	{
+		/** The unique id of the thread pool. */
+		private final int id = ID_PROVIDER.incrementAndGet();
+
 		/** The unique id provider for created threads. */
 		private final AtomicInteger THREAD_ID_PROVIDER = new AtomicInteger();
 
@@ -153,8 +920,8 @@ public class AsyncExecutor
 		@Override
 		public Thread newThread(Runnable r)
 		{
-			return new AsyncExecutorThread(r, "AsyncExecutor-" //$NON-NLS-1$
-					+ AsyncExecutor.this.id + "-Thread-" //$NON-NLS-1$
+			return new Thread(r, "AsyncExecutor-" //$NON-NLS-1$
+					+ this.id + "-Thread-" //$NON-NLS-1$
 					+ this.THREAD_ID_PROVIDER.incrementAndGet());
 		}
 	}
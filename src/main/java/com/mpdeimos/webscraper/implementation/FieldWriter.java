@@ -0,0 +1,155 @@
+package com.mpdeimos.webscraper.implementation;
+
+import com.mpdeimos.webscraper.ScraperError;
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.util.Assert;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.List;
+
+/**
+ * Writes scraped data to a target field using {@link MethodHandle}s, which can
+ * be inlined by the JIT compiler in contrast to {@link Field#set}. Primitive
+ * values are unboxed by the handles, i.e. writes are free of reflective type
+ * checks and do not box.
+ *
+ * @author mpdeimos
+ */
+/* package */class FieldWriter
+{
+	/** The erased type of field setters. */
+	private static final MethodType SETTER_TYPE = MethodType.methodType(
+			void.class,
+			Object.class,
+			Object.class);
+
+	/** The erased type of array element setters. */
+	private static final MethodType ELEMENT_SETTER_TYPE = MethodType.methodType(
+			void.class,
+			Object.class,
+			int.class,
+			Object.class);
+
+	/** The target field. */
+	private final Field field;
+
+	/** The setter of the field. */
+	private final MethodHandle setter;
+
+	/**
+	 * The type of elements stored in the field if it is an array or
+	 * <code>null</code> otherwise.
+	 */
+	private final Class<?> elementType;
+
+	/**
+	 * The element setter for primitive arrays or <code>null</code> if the
+	 * field is no primitive array.
+	 */
+	private final MethodHandle elementSetter;
+
+	/**
+	 * Constructor.
+	 *
+	 * @throws ScraperError
+	 *             If the field is not accessible.
+	 */
+	public FieldWriter(Field field)
+	{
+		this.field = field;
+		this.elementType = field.getType().getComponentType();
+
+		try
+		{
+			this.setter = MethodHandles.publicLookup().unreflectSetter(field).asType(
+					SETTER_TYPE);
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new ScraperError("Field '" + field.getName() //$NON-NLS-1$
+					+ "' is not accessible", e); //$NON-NLS-1$
+		}
+
+		if (this.elementType != null && this.elementType.isPrimitive())
+		{
+			this.elementSetter = MethodHandles.arrayElementSetter(
+					field.getType()).asType(ELEMENT_SETTER_TYPE);
+		}
+		else
+		{
+			this.elementSetter = null;
+		}
+	}
+
+	/** Sets the specified value to the field of the target object. */
+	public void set(Object target, Object value) throws ScraperException
+	{
+		try
+		{
+			this.setter.invokeExact(target, value);
+		}
+		catch (ClassCastException e)
+		{
+			throw cannotAssign(e);
+		}
+		catch (NullPointerException e)
+		{
+			throw cannotAssign(e);
+		}
+		catch (Throwable e)
+		{
+			Assert.notCaught(e, "field setters do not throw"); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @return A new array of the field's array type holding the given values.
+	 *         Must only be called for array fields.
+	 */
+	public Object newArray(List<Object> values) throws ScraperException
+	{
+		Object array = Array.newInstance(this.elementType, values.size());
+		try
+		{
+			if (this.elementSetter == null)
+			{
+				values.toArray((Object[]) array);
+				return array;
+			}
+
+			for (int i = 0; i < values.size(); i++)
+			{
+				this.elementSetter.invokeExact(array, i, values.get(i));
+			}
+			return array;
+		}
+		catch (ArrayStoreException e)
+		{
+			throw cannotAssign(e);
+		}
+		catch (ClassCastException e)
+		{
+			throw cannotAssign(e);
+		}
+		catch (NullPointerException e)
+		{
+			throw cannotAssign(e);
+		}
+		catch (Throwable e)
+		{
+			Assert.notCaught(e, "array element setters do not throw"); //$NON-NLS-1$
+			return null;
+		}
+	}
+
+	/** @return The exception for values not assignable to the field. */
+	private ScraperException cannotAssign(RuntimeException cause)
+	{
+		return new ScraperException("Cannot assign value to field '" //$NON-NLS-1$
+				+ this.field.getName() + "'", cause); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,318 @@
+package com.mpdeimos.webscraper.implementation;
+
+import com.mpdeimos.webscraper.PolitenessOptions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules tasks of hosts on an executor according to
+ * {@link PolitenessOptions}: Each host has a maximum amount of running tasks
+ * and a minimum delay between starting tasks, and all hosts share a token
+ * bucket limiting the overall rate.
+ * <p>
+ * Tasks of hosts exceeding their limits wait in a queue of the host instead of
+ * occupying a thread of the executor, so the threads work on other hosts
+ * meanwhile. Tasks are dispatched when a task of the host finishes or, if
+ * delayed, by a timer. Hosts are dispatched round-robin: a host that started a
+ * task is moved to the end of the order, so hosts added later are not starved
+ * if the overall rate is limited. Tasks are passed to the executor after
+ * releasing the lock of the scheduler, since the executor may block.
+ * 
+ * @author mpdeimos
+ */
+/* package */class HostScheduler
+{
+	/** The timer for dispatching delayed tasks. */
+	private static class TimerHolder
+	{
+		/** The timer, which is created on first use. */
+		private static final ScheduledExecutorService TIMER = createTimer();
+	}
+
+	/** The executor running the tasks. */
+	private final Executor executor;
+
+	/** The maximum amount of running tasks per host. */
+	private final int maxPerHost;
+
+	/** The minimum delay between starting tasks of a host in nanoseconds. */
+	private final long minDelayNanos;
+
+	/** The refill rate of the token bucket per nanosecond or 0. */
+	private final double tokensPerNano;
+
+	/** The capacity of the token bucket. */
+	private final double capacity;
+
+	/** The available tokens. Guarded by this. */
+	private double tokens;
+
+	/** The time of the last token refill. Guarded by this. */
+	private long lastRefill = System.nanoTime();
+
+	/** The hosts with queued or running tasks by name. Guarded by this. */
+	private final Map<String, Host> hosts = new HashMap<String, Host>();
+
+	/**
+	 * The hosts with queued or running tasks in round-robin order. Guarded by
+	 * this.
+	 */
+	private final Deque<Host> order = new ArrayDeque<Host>();
+
+	/** The time of the next scheduled timer dispatch. Guarded by this. */
+	private Long nextWakeUp = null;
+
+	/** Constructor. */
+	public HostScheduler(Executor executor, PolitenessOptions options)
+	{
+		this.executor = executor;
+		this.maxPerHost = Math.max(1, options.maxConnectionsPerHost);
+		this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(options.minDelayMillis);
+		this.tokensPerNano = options.requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.capacity = Math.max(1, options.burst);
+		this.tokens = this.capacity;
+	}
+
+	/** Schedules a task of the given host. */
+	public void execute(String host, Runnable task)
+	{
+		synchronized (this)
+		{
+			Host state = this.hosts.get(host);
+			if (state == null)
+			{
+				state = new Host(host, System.nanoTime());
+				this.hosts.put(host, state);
+				this.order.add(state);
+			}
+			state.queue.add(task);
+		}
+		dispatch();
+	}
+
+	/**
+	 * Starts queued tasks of all hosts within their limits and schedules a
+	 * timer dispatch for delayed ones.
+	 */
+	private void dispatch()
+	{
+		List<Runnable> started = new ArrayList<Runnable>();
+		synchronized (this)
+		{
+			long now = System.nanoTime();
+			long wakeUp = Long.MAX_VALUE;
+
+			// counts the hosts visited since the last started task, so the
+			// loop ends after a full round without starting a task
+			int idle = 0;
+			while (idle < this.order.size())
+			{
+				Host host = this.order.poll();
+				if (host.queue.isEmpty() && host.running == 0)
+				{
+					this.hosts.remove(host.name);
+					continue;
+				}
+				if (host.queue.isEmpty() || host.running >= this.maxPerHost)
+				{
+					this.order.add(host);
+					idle++;
+					continue;
+				}
+				if (now - host.nextStart < 0)
+				{
+					wakeUp = Math.min(wakeUp, host.nextStart);
+					this.order.add(host);
+					idle++;
+					continue;
+				}
+
+				long tokenDelay = takeToken(now);
+				if (tokenDelay > 0)
+				{
+					// the host is the first to start with the next token
+					this.order.addFirst(host);
+					wakeUp = Math.min(wakeUp, now + tokenDelay);
+					break;
+				}
+
+				host.running++;
+				host.nextStart = now + this.minDelayNanos;
+				started.add(starter(host, host.queue.poll()));
+				this.order.add(host);
+				idle = 0;
+			}
+
+			scheduleWakeUp(now, wakeUp);
+		}
+
+		for (Runnable starter : started)
+		{
+			starter.run();
+		}
+	}
+
+	/** @return The runnable starting the task of the host on the executor. */
+	private Runnable starter(final Host host, final Runnable task)
+	{
+		return new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				start(host, task);
+			}
+		};
+	}
+
+	/**
+	 * Takes a token of the bucket.
+	 * 
+	 * @return 0 if a token has been taken or the nanoseconds till the next
+	 *         token is available.
+	 */
+	private long takeToken(long now)
+	{
+		if (this.tokensPerNano == 0)
+		{
+			return 0;
+		}
+
+		this.tokens = Math.min(this.capacity, this.tokens
+				+ (now - this.lastRefill) * this.tokensPerNano);
+		this.lastRefill = now;
+		if (this.tokens >= 1)
+		{
+			this.tokens--;
+			return 0;
+		}
+		return Math.max(1, (long) Math.ceil((1 - this.tokens)
+				/ this.tokensPerNano));
+	}
+
+	/** Schedules a timer dispatch at the given time if not yet scheduled. */
+	private void scheduleWakeUp(long now, long wakeUp)
+	{
+		if (wakeUp == Long.MAX_VALUE || this.nextWakeUp != null
+				&& this.nextWakeUp <= wakeUp)
+		{
+			return;
+		}
+
+		this.nextWakeUp = wakeUp;
+		TimerHolder.TIMER.schedule(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				synchronized (HostScheduler.this)
+				{
+					HostScheduler.this.nextWakeUp = null;
+				}
+				dispatch();
+			}
+		}, wakeUp - now, TimeUnit.NANOSECONDS);
+	}
+
+	/** Starts a task of a host on the executor. */
+	private void start(final Host host, final Runnable task)
+	{
+		Runnable hostTask = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					task.run();
+				}
+				finally
+				{
+					finished(host);
+				}
+			}
+		};
+
+		try
+		{
+			this.executor.execute(hostTask);
+		}
+		catch (RejectedExecutionException e)
+		{
+			// the executor has been shut down after a failure
+			synchronized (this)
+			{
+				host.running--;
+			}
+			if (task instanceof Future)
+			{
+				((Future<?>) task).cancel(false);
+			}
+		}
+	}
+
+	/** Bookkeeping of a finished task of a host. */
+	private void finished(Host host)
+	{
+		synchronized (this)
+		{
+			host.running--;
+		}
+		dispatch();
+	}
+
+	/** Creates the timer with a daemon thread. */
+	private static ScheduledExecutorService createTimer()
+	{
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(
+				1,
+				new ThreadFactory()
+				{
+					@Override
+					public Thread newThread(Runnable r)
+					{
+						Thread thread = new Thread(r, "HostScheduler-Timer"); //$NON-NLS-1$
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		timer.setRemoveOnCancelPolicy(true);
+		return timer;
+	}
+
+	/** The scheduling state of a host. */
+	private static class Host
+	{
+		/** The name of the host. */
+		private final String name;
+
+		/** The tasks waiting to be started. */
+		private final Queue<Runnable> queue = new ArrayDeque<Runnable>();
+
+		/** The amount of running tasks. */
+		private int running = 0;
+
+		/** The earliest time the next task may be started. */
+		private long nextStart;
+
+		/** Constructor. */
+		private Host(String name, long now)
+		{
+			this.name = name;
+			this.nextStart = now;
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package com.mpdeimos.webscraper.implementation;
+
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.ScraperSource;
+import com.mpdeimos.webscraper.ScraperSource.ScraperSourceProvider;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Intake of lazily added targets. Targets are pulled from their iterators only
+ * if less than the maximum amount of targets are in flight, i.e. submitted but
+ * not completely scraped including nested scrapes. So neither the targets nor
+ * their scrapers of huge batches are on the heap at once.
+ * 
+ * @author mpdeimos
+ */
+/* package */class LazyIntake
+{
+	/** The iterators of the lazily added targets. */
+	private final List<Iterator<? extends ScraperSourceProvider>> targets;
+
+	/** The permits of targets in flight. */
+	private final Semaphore window;
+
+	/**
+	 * The amount of submitted targets that are not scraped, plus one while
+	 * targets are pulled.
+	 */
+	private final AtomicInteger pending = new AtomicInteger(1);
+
+	/** The first failure of a target. */
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+	/** The future completing after all targets are scraped. */
+	private final CompletableFuture<Void> completion = new CompletableFuture<Void>();
+
+	/**
+	 * The amount of requested pulls of {@link #submitAsync}, which serializes
+	 * pulling on the thread that requested the first pending pull.
+	 */
+	private final AtomicInteger pulls = new AtomicInteger();
+
+	/**
+	 * The index of the iterator targets are pulled from by
+	 * {@link #submitAsync}. Guarded by {@link #pulls}.
+	 */
+	private int current = 0;
+
+	/**
+	 * Flag whether {@link #submitAsync} stopped pulling targets. Guarded by
+	 * {@link #pulls}.
+	 */
+	private boolean stopped = false;
+
+	/** Constructor. */
+	public LazyIntake(
+			List<Iterator<? extends ScraperSourceProvider>> targets,
+			int maxInFlight)
+	{
+		this.targets = targets;
+		this.window = new Semaphore(maxInFlight);
+	}
+
+	/**
+	 * Pulls and submits all targets, blocking while the window is exhausted.
+	 * Stops after the first failure of the executor. If pulling fails, the
+	 * {@link #getCompletion()} fails, too. Must not be called from a task of
+	 * the executor, which would block a thread the window waits for.
+	 */
+	public void submitAll(AsyncExecutor executor, Submitter submitter)
+			throws ScraperException
+	{
+		Throwable pullFailure = null;
+		try
+		{
+			for (Iterator<? extends ScraperSourceProvider> iterator : this.targets)
+			{
+				while (!executor.isFailed() && iterator.hasNext())
+				{
+					try
+					{
+						this.window.acquire();
+					}
+					catch (InterruptedException e)
+					{
+						throw new ScraperException("Scraper thread interruped", e); //$NON-NLS-1$
+					}
+
+					ScraperSourceProvider target = iterator.next();
+					this.pending.incrementAndGet();
+					submitter.submit(target.getSource(), target).whenComplete(
+							new BiConsumer<Object, Throwable>()
+							{
+								@Override
+								public void accept(Object result, Throwable failure)
+								{
+									LazyIntake.this.window.release();
+									finished(failure);
+								}
+							});
+				}
+			}
+		}
+		catch (ScraperException e)
+		{
+			pullFailure = e;
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			pullFailure = e;
+			throw e;
+		}
+		finally
+		{
+			finished(pullFailure);
+		}
+	}
+
+	/**
+	 * Pulls and submits targets without blocking. The calling thread submits
+	 * targets while the window is not exhausted, and the completion of each
+	 * submitted target pulls further targets on the thread completing it.
+	 * Stops after the first failure of the executor. Failures of pulling fail
+	 * the {@link #getCompletion()}.
+	 */
+	public void submitAsync(AsyncExecutor executor, Submitter submitter)
+	{
+		if (this.pulls.getAndIncrement() != 0)
+		{
+			return;
+		}
+
+		do
+		{
+			if (!this.stopped)
+			{
+				pullWhileInWindow(executor, submitter);
+			}
+		}
+		while (this.pulls.decrementAndGet() != 0);
+	}
+
+	/**
+	 * Submits targets while the window is not exhausted and marks pulling as
+	 * stopped if all targets are pulled, the executor failed or pulling
+	 * failed.
+	 */
+	private void pullWhileInWindow(
+			final AsyncExecutor executor,
+			final Submitter submitter)
+	{
+		try
+		{
+			while (!executor.isFailed() && this.window.tryAcquire())
+			{
+				ScraperSourceProvider target = nextTarget();
+				if (target == null)
+				{
+					this.window.release();
+					break;
+				}
+
+				this.pending.incrementAndGet();
+				submitter.submit(target.getSource(), target).whenComplete(
+						new BiConsumer<Object, Throwable>()
+						{
+							@Override
+							public void accept(Object result, Throwable failure)
+							{
+								LazyIntake.this.window.release();
+								finished(failure);
+								submitAsync(executor, submitter);
+							}
+						});
+			}
+
+			if (executor.isFailed() || this.current == this.targets.size())
+			{
+				this.stopped = true;
+				finished(null);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			this.stopped = true;
+			finished(e);
+		}
+	}
+
+	/**
+	 * @return The next target of the iterators or <code>null</code> if all
+	 *         targets are pulled.
+	 */
+	private ScraperSourceProvider nextTarget()
+	{
+		while (this.current < this.targets.size())
+		{
+			Iterator<? extends ScraperSourceProvider> iterator = this.targets.get(this.current);
+			if (iterator.hasNext())
+			{
+				return iterator.next();
+			}
+			this.current++;
+		}
+		return null;
+	}
+
+	/**
+	 * @return A future completing after all targets are pulled and scraped.
+	 *         It completes exceptionally with the first failure of a target.
+	 */
+	public CompletableFuture<Void> getCompletion()
+	{
+		return this.completion;
+	}
+
+	/** Bookkeeping of a scraped target or the end of pulling targets. */
+	private void finished(Throwable failure)
+	{
+		if (failure != null)
+		{
+			this.failure.compareAndSet(null, failure);
+		}
+		if (this.pending.decrementAndGet() > 0)
+		{
+			return;
+		}
+
+		Throwable firstFailure = this.failure.get();
+		if (firstFailure == null)
+		{
+			this.completion.complete(null);
+		}
+		else
+		{
+			this.completion.completeExceptionally(firstFailure);
+		}
+	}
+
+	/** Submits the scrape of a single target. */
+	public interface Submitter
+	{
+		/**
+		 * @return A future completing when the target is scraped including
+		 *         nested scrapes.
+		 */
+		public CompletableFuture<?> submit(ScraperSource source, Object target);
+	}
+}
@@ -0,0 +1,76 @@
+package com.mpdeimos.webscraper.implementation;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.Collector;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+/**
+ * Collects the elements matching several {@link Evaluator}s with a single
+ * traversal of the DOM tree. The result for each evaluator is the same as if
+ * {@link Collector#collect(Evaluator, Element)} had been called separately,
+ * i.e. the elements are in document order.
+ * 
+ * @author mpdeimos
+ */
+/* package */class MultiCollector implements NodeVisitor
+{
+	/** The root element of the traversal. */
+	private final Element root;
+
+	/** The evaluators to match. */
+	private final Evaluator[] evaluators;
+
+	/** The matching elements per evaluator. */
+	private final Elements[] results;
+
+	/** Constructor. */
+	private MultiCollector(Element root, Evaluator[] evaluators)
+	{
+		this.root = root;
+		this.evaluators = evaluators;
+		this.results = new Elements[evaluators.length];
+		for (int i = 0; i < evaluators.length; i++)
+		{
+			this.results[i] = new Elements();
+		}
+	}
+
+	/**
+	 * @return The elements below and including the root element that match
+	 *         the evaluator with the same index.
+	 */
+	public static Elements[] collect(Evaluator[] evaluators, Element root)
+	{
+		MultiCollector collector = new MultiCollector(root, evaluators);
+		new NodeTraversor(collector).traverse(root);
+		return collector.results;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void head(Node node, int depth)
+	{
+		if (node instanceof Element)
+		{
+			Element element = (Element) node;
+			for (int i = 0; i < this.evaluators.length; i++)
+			{
+				if (this.evaluators[i].matches(this.root, element))
+				{
+					this.results[i].add(element);
+				}
+			}
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void tail(Node node, int depth)
+	{
+		// nothing to do
+	}
+}
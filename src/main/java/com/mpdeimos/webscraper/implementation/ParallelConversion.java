@@ -0,0 +1,194 @@
+package com.mpdeimos.webscraper.implementation;
+
+import com.mpdeimos.webscraper.Scrape;
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.implementation.AsyncExecutor.TaskContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+/**
+ * Converts the elements of {@link Scrape#parallel()} array fields in parallel
+ * chunks on a fork/join pool. Scrapes running on a work-stealing pool fork the
+ * chunks to that pool, all others use a shared pool with as many threads as
+ * available processors.
+ * <p>
+ * Each chunk uses its own {@link AnnotatedScraperContext} and stores its
+ * results by element index, so the original order is kept. Nested scrapes of
+ * the converted elements are scheduled on the executor of the parent scrape
+ * and tracked as part of it.
+ * 
+ * @author mpdeimos
+ */
+/* package */class ParallelConversion
+{
+	/** The amount of chunks per thread, for balancing uneven chunks. */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/** The shared pool for scrapes not running on a fork/join pool. */
+	private static class PoolHolder
+	{
+		/** The pool, which is created on first use. */
+		private static final ForkJoinPool POOL = new ForkJoinPool();
+	}
+
+	/**
+	 * The marker for elements that are skipped, as their value is empty and
+	 * empty values should not be assigned.
+	 */
+	private static final Object SKIPPED = new Object();
+
+	/** The source elements to convert. */
+	private final Elements elements;
+
+	/** The context of the field, defining plan and root element. */
+	private final AnnotatedScraperContext context;
+
+	/** The task context of the parent scrape. */
+	private final TaskContext taskContext = TaskContext.capture();
+
+	/** The converted data per element. */
+	private final Object[] data;
+
+	/** The first failure of a chunk. */
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+	/** Constructor. */
+	private ParallelConversion(
+			AnnotatedScraperContext context,
+			Elements elements)
+	{
+		this.context = context;
+		this.elements = elements;
+		this.data = new Object[elements.size()];
+	}
+
+	/**
+	 * Extracts the data of all elements in parallel.
+	 * 
+	 * @return The extracted data in the order of the elements, without the
+	 *         skipped empty values.
+	 */
+	public static List<Object> extractData(
+			AnnotatedScraperContext context,
+			Elements elements)
+			throws ScraperException
+	{
+		return new ParallelConversion(context, elements).run();
+	}
+
+	/** Converts all chunks and collects the data. */
+	private List<Object> run() throws ScraperException
+	{
+		ForkJoinPool pool = ForkJoinTask.getPool();
+		if (pool == null)
+		{
+			pool = PoolHolder.POOL;
+		}
+		int chunkSize = Math.max(1, this.data.length
+				/ (pool.getParallelism() * CHUNKS_PER_THREAD));
+
+		Chunk chunk = new Chunk(0, this.data.length, chunkSize);
+		if (ForkJoinTask.inForkJoinPool())
+		{
+			chunk.invoke();
+		}
+		else
+		{
+			pool.invoke(chunk);
+		}
+		AsyncExecutor.rethrow(this.failure.get());
+
+		List<Object> dataList = new ArrayList<Object>(this.data.length);
+		for (Object value : this.data)
+		{
+			if (value != SKIPPED)
+			{
+				dataList.add(value);
+			}
+		}
+		return dataList;
+	}
+
+	/** Extracts the data of the elements in the given index range. */
+	private void extractData(int from, int to) throws ScraperException
+	{
+		AnnotatedScraperContext chunkContext = new AnnotatedScraperContext(
+				this.context.getPlan());
+		chunkContext.setRootElement(this.context.getRootElement());
+		chunkContext.setTargetType(this.context.getTargetType());
+		boolean empty = this.context.getConfiguration().empty();
+
+		for (int i = from; i < to && this.failure.get() == null; i++)
+		{
+			Element element = this.elements.get(i);
+			chunkContext.setSourceElement(element);
+			Object value = AnnotatedScraper.extractDataFromElement(chunkContext);
+
+			if (value == null && !empty)
+			{
+				value = SKIPPED;
+			}
+			this.data[i] = value;
+		}
+	}
+
+	/** Task converting a range of elements, split in halves till small. */
+	private class Chunk extends RecursiveAction
+	{
+		/** Serial version UID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The first element index. */
+		private final int from;
+
+		/** The index after the last element. */
+		private final int to;
+
+		/** The maximum amount of elements converted without splitting. */
+		private final int chunkSize;
+
+		/** Constructor. */
+		private Chunk(int from, int to, int chunkSize)
+		{
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		protected void compute()
+		{
+			if (this.to - this.from > this.chunkSize)
+			{
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(
+						new Chunk(this.from, middle, this.chunkSize),
+						new Chunk(middle, this.to, this.chunkSize));
+				return;
+			}
+
+			TaskContext previous = ParallelConversion.this.taskContext.attach();
+			try
+			{
+				extractData(this.from, this.to);
+			}
+			catch (Throwable e)
+			{
+				ParallelConversion.this.failure.compareAndSet(null, e);
+			}
+			finally
+			{
+				previous.attach();
+			}
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package com.mpdeimos.webscraper.implementation;
+
+import com.mpdeimos.webscraper.StageMetrics;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed size thread pool of a stage of a {@link StagedScraper} that records
+ * its queue depth.
+ * <p>
+ * If the queue of the stage is bounded and full, submitting threads of other
+ * stages are blocked until space is available, which throttles the previous
+ * stage. Tasks submitted by threads of the stage itself, e.g. for nested
+ * scrapes, are executed by the submitting thread instead, since blocking them
+ * could dead-lock the stage.
+ * 
+ * @author mpdeimos
+ */
+/* package */class PipelineStage extends ThreadPoolExecutor implements
+		StageMetrics
+{
+	/** The name of the stage. */
+	private final String name;
+
+	/** The maximum observed queue depth. */
+	private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+	/** Constructor. */
+	public PipelineStage(
+			String name,
+			int nThreads,
+			BlockingQueue<Runnable> queue)
+	{
+		super(
+				nThreads,
+				nThreads,
+				0,
+				TimeUnit.MILLISECONDS,
+				queue,
+				new StageThreadFactory(name),
+				new BlockingPolicy());
+		this.name = name;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void execute(Runnable command)
+	{
+		super.execute(command);
+
+		int depth = getQueue().size();
+		int max;
+		do
+		{
+			max = this.maxQueueDepth.get();
+		}
+		while (depth > max && !this.maxQueueDepth.compareAndSet(max, depth));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getName()
+	{
+		return this.name;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getParallelism()
+	{
+		return getCorePoolSize();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getQueueDepth()
+	{
+		return getQueue().size();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getMaxQueueDepth()
+	{
+		return this.maxQueueDepth.get();
+	}
+
+	/** @return Whether the current thread is a thread of this stage. */
+	private boolean isStageThread()
+	{
+		Thread thread = Thread.currentThread();
+		return thread instanceof StageThread
+				&& ((StageThread) thread).factory == getThreadFactory();
+	}
+
+	/** Thread of a stage. */
+	private static class StageThread extends Thread
+	{
+		/** The factory of the thread, identifying the stage. */
+		private final StageThreadFactory factory;
+
+		/** Constructor. */
+		private StageThread(
+				Runnable runnable,
+				String name,
+				StageThreadFactory factory)
+		{
+			super(runnable, name);
+			this.factory = factory;
+		}
+	}
+
+	/** Factory for named threads of a stage. */
+	private static class StageThreadFactory implements ThreadFactory
+	{
+		/** The name of the stage. */
+		private final String name;
+
+		/** The unique id provider for created threads. */
+		private final AtomicInteger threadIdProvider = new AtomicInteger();
+
+		/** Constructor. */
+		private StageThreadFactory(String name)
+		{
+			this.name = name;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			return new StageThread(r, "PipelineStage-" + this.name //$NON-NLS-1$
+					+ "-Thread-" + this.threadIdProvider.incrementAndGet(), //$NON-NLS-1$
+					this);
+		}
+	}
+
+	/**
+	 * Blocks submitting threads of other stages if the queue is full and runs
+	 * tasks of threads of the stage itself.
+	 */
+	private static class BlockingPolicy implements RejectedExecutionHandler
+	{
+		/** {@inheritDoc} */
+		@Override
+		public void rejectedExecution(
+				Runnable runnable,
+				ThreadPoolExecutor executor)
+		{
+			if (executor.isShutdown())
+			{
+				throw new RejectedExecutionException("Stage is shut down"); //$NON-NLS-1$
+			}
+
+			if (((PipelineStage) executor).isStageThread())
+			{
+				runnable.run();
+				return;
+			}
+
+			try
+			{
+				executor.getQueue().put(runnable);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException(
+						"Interrupted while waiting for stage", e); //$NON-NLS-1$
+			}
+		}
+	}
+}
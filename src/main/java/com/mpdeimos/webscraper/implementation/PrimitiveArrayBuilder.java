@@ -0,0 +1,174 @@
+package com.mpdeimos.webscraper.implementation;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer that parses scraped text directly into a primitive array
+ * without boxing the values. Supported are <code>int</code>,
+ * <code>long</code> and <code>double</code> arrays.
+ *
+ * @author mpdeimos
+ */
+/* package */abstract class PrimitiveArrayBuilder
+{
+	/** The amount of values in the buffer. */
+	protected int size = 0;
+
+	/**
+	 * Parses the given text and appends it to the buffer.
+	 *
+	 * @throws NumberFormatException
+	 *             If the text cannot be parsed to the element type.
+	 */
+	public abstract void add(String text);
+
+	/** @return The array holding all appended values. */
+	public abstract Object build();
+
+	/** @return Whether the given array element type is supported. */
+	public static boolean supports(Class<?> elementType)
+	{
+		return elementType == int.class || elementType == long.class
+				|| elementType == double.class;
+	}
+
+	/**
+	 * @return A new builder for the given element type with an initial
+	 *         capacity.
+	 * @throws IllegalArgumentException
+	 *             If the element type is not supported.
+	 */
+	public static PrimitiveArrayBuilder create(
+			Class<?> elementType,
+			int capacity)
+	{
+		if (elementType == int.class)
+		{
+			return new IntArrayBuilder(capacity);
+		}
+		if (elementType == long.class)
+		{
+			return new LongArrayBuilder(capacity);
+		}
+		if (elementType == double.class)
+		{
+			return new DoubleArrayBuilder(capacity);
+		}
+		throw new IllegalArgumentException("Unsupported element type " //$NON-NLS-1$
+				+ elementType);
+	}
+
+	/** @return The increased capacity of a full buffer. */
+	protected static int grow(int capacity)
+	{
+		return Math.max(2 * capacity, 8);
+	}
+
+	/** Builder for <code>int</code> arrays. */
+	private static class IntArrayBuilder extends PrimitiveArrayBuilder
+	{
+		/** The buffered values. */
+		private int[] values;
+
+		/** Constructor. */
+		private IntArrayBuilder(int capacity)
+		{
+			this.values = new int[capacity];
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void add(String text)
+		{
+			int value = Integer.parseInt(text);
+			if (this.size == this.values.length)
+			{
+				this.values = Arrays.copyOf(this.values, grow(this.size));
+			}
+			this.values[this.size++] = value;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Object build()
+		{
+			if (this.size == this.values.length)
+			{
+				return this.values;
+			}
+			return Arrays.copyOf(this.values, this.size);
+		}
+	}
+
+	/** Builder for <code>long</code> arrays. */
+	private static class LongArrayBuilder extends PrimitiveArrayBuilder
+	{
+		/** The buffered values. */
+		private long[] values;
+
+		/** Constructor. */
+		private LongArrayBuilder(int capacity)
+		{
+			this.values = new long[capacity];
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void add(String text)
+		{
+			long value = Long.parseLong(text);
+			if (this.size == this.values.length)
+			{
+				this.values = Arrays.copyOf(this.values, grow(this.size));
+			}
+			this.values[this.size++] = value;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Object build()
+		{
+			if (this.size == this.values.length)
+			{
+				return this.values;
+			}
+			return Arrays.copyOf(this.values, this.size);
+		}
+	}
+
+	/** Builder for <code>double</code> arrays. */
+	private static class DoubleArrayBuilder extends PrimitiveArrayBuilder
+	{
+		/** The buffered values. */
+		private double[] values;
+
+		/** Constructor. */
+		private DoubleArrayBuilder(int capacity)
+		{
+			this.values = new double[capacity];
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void add(String text)
+		{
+			double value = Double.parseDouble(text);
+			if (this.size == this.values.length)
+			{
+				this.values = Arrays.copyOf(this.values, grow(this.size));
+			}
+			this.values[this.size++] = value;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Object build()
+		{
+			if (this.size == this.values.length)
+			{
+				return this.values;
+			}
+			return Arrays.copyOf(this.values, this.size);
+		}
+	}
+}
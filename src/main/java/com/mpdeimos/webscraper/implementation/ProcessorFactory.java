@@ -0,0 +1,103 @@
+package com.mpdeimos.webscraper.implementation;
+
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.Stateless;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Provides instances of a selection, validation or conversion processor class.
+ * Whether the class is annotated with {@link Stateless} is resolved once when
+ * the factory is created. Stateless processors are instantiated once and
+ * shared by all factories, all others are instantiated for each request.
+ * Shared instances are attached to their class with a {@link ClassValue}, so
+ * they do not keep class loaders of processors alive.
+ * 
+ * @author mpdeimos
+ */
+/* package */class ProcessorFactory<T>
+{
+	/** The shared instances of stateless processors. */
+	private static final ClassValue<AtomicReference<Object>> SHARED = new ClassValue<AtomicReference<Object>>()
+	{
+		@Override
+		protected AtomicReference<Object> computeValue(Class<?> type)
+		{
+			return new AtomicReference<Object>();
+		}
+	};
+
+	/** The processor class. */
+	private final Class<? extends T> processorClass;
+
+	/** The kind of processor for error messages. */
+	private final String kind;
+
+	/** Flag whether the processor class is stateless. */
+	private final boolean stateless;
+
+	/**
+	 * The shared instance of a stateless processor or <code>null</code> if
+	 * not resolved yet.
+	 */
+	private volatile T shared = null;
+
+	/** Constructor. */
+	public ProcessorFactory(Class<? extends T> processorClass, String kind)
+	{
+		this.processorClass = processorClass;
+		this.kind = kind;
+		this.stateless = processorClass.isAnnotationPresent(Stateless.class);
+	}
+
+	/** @return Whether the processor class is stateless. */
+	public boolean isStateless()
+	{
+		return this.stateless;
+	}
+
+	/**
+	 * @return An instance of the processor class.
+	 * @throws ScraperException
+	 *             If the processor cannot be instantiated.
+	 */
+	public T getInstance() throws ScraperException
+	{
+		if (!this.stateless)
+		{
+			return newInstance();
+		}
+
+		T processor = this.shared;
+		if (processor == null)
+		{
+			AtomicReference<Object> instance = SHARED.get(this.processorClass);
+			Object existing = instance.get();
+			if (existing == null)
+			{
+				instance.compareAndSet(null, newInstance());
+				existing = instance.get();
+			}
+			processor = this.processorClass.cast(existing);
+			this.shared = processor;
+		}
+		return processor;
+	}
+
+	/** Creates a new instance of the processor class. */
+	private T newInstance() throws ScraperException
+	{
+		try
+		{
+			return this.processorClass.newInstance();
+		}
+		catch (InstantiationException e)
+		{
+			throw new ScraperException("Could not instantiate " + this.kind + ".", e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new ScraperException("Could not access " + this.kind + ".", e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+}
@@ -0,0 +1,323 @@
+package com.mpdeimos.webscraper.implementation;
+
+import com.mpdeimos.webscraper.Scrape;
+import com.mpdeimos.webscraper.ScraperError;
+import com.mpdeimos.webscraper.conversion.Converter;
+import com.mpdeimos.webscraper.conversion.DefaultConverter;
+import com.mpdeimos.webscraper.selection.Selector;
+import com.mpdeimos.webscraper.validation.Validator;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+import org.jsoup.select.Selector.SelectorParseException;
+
+/**
+ * Compiled, immutable scraping plan of a target class. The plan resolves all
+ * accessible fields with {@link Scrape} annotations, their option annotations
+ * and processing stages once, so that subsequent scrapes of the same class
+ * just need to execute the plan.
+ * <p>
+ * Plans are cached per class and may be shared between threads. The cache
+ * does not keep classes or their class loaders alive.
+ *
+ * @author mpdeimos
+ */
+/* package */class ScrapePlan
+{
+	/** The cache of compiled plans per target class. */
+	private static final ClassValue<ScrapePlan> PLANS = new ClassValue<ScrapePlan>()
+	{
+		@Override
+		protected ScrapePlan computeValue(Class<?> targetClass)
+		{
+			return new ScrapePlan(targetClass);
+		}
+	};
+
+	/** The target class of the plan. */
+	private final Class<?> targetClass;
+
+	/**
+	 * The plans of the annotated fields in the unspecified order of
+	 * {@link Class#getFields()}.
+	 */
+	private final List<FieldPlan> fields;
+
+	/** Constructor. */
+	private ScrapePlan(Class<?> targetClass)
+	{
+		this.targetClass = targetClass;
+
+		List<FieldPlan> fields = new ArrayList<FieldPlan>();
+		for (Field field : targetClass.getFields())
+		{
+			int modifiers = field.getModifiers();
+			if (Modifier.isPublic(modifiers) && !Modifier.isFinal(modifiers)
+					&& field.isAnnotationPresent(Scrape.class))
+			{
+				fields.add(new FieldPlan(field));
+			}
+		}
+		this.fields = Collections.unmodifiableList(fields);
+	}
+
+	/**
+	 * @return The cached plan for the given class. The plan is compiled on
+	 *         first access.
+	 */
+	public static ScrapePlan forClass(Class<?> targetClass)
+	{
+		return PLANS.get(targetClass);
+	}
+
+	/** @return The target class of the plan. */
+	public Class<?> getTargetClass()
+	{
+		return this.targetClass;
+	}
+
+	/**
+	 * @return The plans of all accessible (public & non-final) fields of the
+	 *         class and super classes having the {@link Scrape} annotation.
+	 */
+	public List<FieldPlan> getFields()
+	{
+		return this.fields;
+	}
+
+	/** Compiled plan for scraping a single annotated field. */
+	/* package */static class FieldPlan
+	{
+		/** The target field. */
+		private final Field field;
+
+		/** The writer of the field. */
+		private final FieldWriter writer;
+
+		/** The scraper configuration of the field. */
+		private final Scrape configuration;
+
+		/** The parsed CSS query of the configuration. */
+		private final Evaluator query;
+
+		/** Flag whether the field is an array of scraped elements. */
+		private final boolean array;
+
+		/**
+		 * The type of a single scraped element, i.e. the component type for
+		 * arrays and the field type otherwise.
+		 */
+		private final Class<?> elementType;
+
+		/**
+		 * Flag whether the field is a primitive array that is populated by a
+		 * {@link PrimitiveArrayBuilder} instead of the converter.
+		 */
+		private final boolean primitiveArray;
+
+		/**
+		 * Flag whether the elements of the array field are converted in
+		 * parallel by {@link ParallelConversion}.
+		 */
+		private final boolean parallel;
+
+		/**
+		 * The compiled regular expression of the configuration or
+		 * <code>null</code> if no regular expression is specified.
+		 */
+		private final Pattern pattern;
+
+		/** All annotations of the field by annotation type. */
+		private final Map<Class<? extends Annotation>, Annotation> options;
+
+		/** The root selector stage. */
+		private final ProcessorFactory<Selector> selector;
+
+		/** The validation stage. */
+		private final ProcessorFactory<Validator> validator;
+
+		/** The conversion stage. */
+		private final ProcessorFactory<Converter> converter;
+
+		/** Constructor. */
+		private FieldPlan(Field field)
+		{
+			this.field = field;
+			this.writer = new FieldWriter(field);
+			this.configuration = field.getAnnotation(Scrape.class);
+			this.query = parseQuery(field, this.configuration.value());
+			this.array = field.getType().isArray();
+			if (this.array)
+			{
+				this.elementType = field.getType().getComponentType();
+			}
+			else
+			{
+				this.elementType = field.getType();
+			}
+
+			this.pattern = compilePattern(field, this.configuration.regex());
+
+			Map<Class<? extends Annotation>, Annotation> options = new HashMap<Class<? extends Annotation>, Annotation>();
+			for (Annotation annotation : field.getAnnotations())
+			{
+				options.put(annotation.annotationType(), annotation);
+			}
+			this.options = Collections.unmodifiableMap(options);
+
+			this.selector = new ProcessorFactory<Selector>(
+					this.configuration.root(),
+					"selector"); //$NON-NLS-1$
+			this.validator = new ProcessorFactory<Validator>(
+					this.configuration.validator(),
+					"validator"); //$NON-NLS-1$
+			this.converter = new ProcessorFactory<Converter>(
+					this.configuration.converter(),
+					"convertor"); //$NON-NLS-1$
+			this.primitiveArray = this.array
+					&& this.configuration.converter() == DefaultConverter.class
+					&& PrimitiveArrayBuilder.supports(this.elementType);
+			this.parallel = this.array && !this.primitiveArray
+					&& this.configuration.parallel();
+		}
+
+		/** @return The target field. */
+		public Field getField()
+		{
+			return this.field;
+		}
+
+		/** @return The writer of the field. */
+		public FieldWriter getWriter()
+		{
+			return this.writer;
+		}
+
+		/** @return The scraper configuration of the field. */
+		public Scrape getConfiguration()
+		{
+			return this.configuration;
+		}
+
+		/** @see #query */
+		public Evaluator getQuery()
+		{
+			return this.query;
+		}
+
+		/** @return Whether the field is an array of scraped elements. */
+		public boolean isArray()
+		{
+			return this.array;
+		}
+
+		/** @see #primitiveArray */
+		public boolean isPrimitiveArray()
+		{
+			return this.primitiveArray;
+		}
+
+		/** @see #parallel */
+		public boolean isParallel()
+		{
+			return this.parallel;
+		}
+
+		/** @see #elementType */
+		public Class<?> getElementType()
+		{
+			return this.elementType;
+		}
+
+		/** @see #pattern */
+		public Pattern getPattern()
+		{
+			return this.pattern;
+		}
+
+		/**
+		 * @return The option annotation of the given type or <code>null</code>
+		 *         if the field is not annotated with it.
+		 */
+		public <A extends Annotation> A getOption(Class<A> optionType)
+		{
+			return optionType.cast(this.options.get(optionType));
+		}
+
+		/** @return The root selector stage. */
+		public ProcessorFactory<Selector> getSelector()
+		{
+			return this.selector;
+		}
+
+		/** @return The validation stage. */
+		public ProcessorFactory<Validator> getValidator()
+		{
+			return this.validator;
+		}
+
+		/** @return The conversion stage. */
+		public ProcessorFactory<Converter> getConverter()
+		{
+			return this.converter;
+		}
+
+		/**
+		 * @return The parsed CSS query.
+		 * @throws ScraperError
+		 *             If the CSS query is malformed.
+		 */
+		private static Evaluator parseQuery(Field field, String query)
+		{
+			try
+			{
+				return QueryParser.parse(query);
+			}
+			catch (SelectorParseException e)
+			{
+				throw new ScraperError("Malformed CSS query on field '" //$NON-NLS-1$
+						+ field.getName() + "'", e); //$NON-NLS-1$
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new ScraperError("Malformed CSS query on field '" //$NON-NLS-1$
+						+ field.getName() + "'", e); //$NON-NLS-1$
+			}
+		}
+
+		/**
+		 * @return The compiled regular expression or <code>null</code> if the
+		 *         expression is empty.
+		 * @throws ScraperError
+		 *             If the regular expression is malformed.
+		 */
+		private static Pattern compilePattern(Field field, String regex)
+		{
+			if (regex.isEmpty())
+			{
+				return null;
+			}
+
+			try
+			{
+				return Pattern.compile(regex);
+			}
+			catch (PatternSyntaxException e)
+			{
+				throw new ScraperError("Malformed regular expression on field '" //$NON-NLS-1$
+						+ field.getName() + "'", e); //$NON-NLS-1$
+			}
+		}
+	}
+}
@@ -0,0 +1,328 @@
+package com.mpdeimos.webscraper.implementation;
+
+import com.mpdeimos.webscraper.PolitenessOptions;
+import com.mpdeimos.webscraper.ScrapeFuture;
+import com.mpdeimos.webscraper.ScrapeSummary;
+import com.mpdeimos.webscraper.Scraper;
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.ScraperSource;
+import com.mpdeimos.webscraper.StageMetrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link Scraper} implementation that scrapes multiple documents in a pipeline
+ * of two stages with independent thread pools: The fetch stage performs the
+ * I/O-bound {@link ScraperSource#fetch()}, the bind stage parses the fetched
+ * documents and binds them to the targets. If the queue of the bind stage is
+ * full, the fetch stage waits for the bind stage.
+ * <p>
+ * Nested scrapes are executed on the bind stage. Politeness limits apply to
+ * the fetch stage, and nested scrapes of hosts are scheduled within these
+ * limits on the fetch stage as well. The first failure of a stage cancels both
+ * stages.
+ * 
+ * @author mpdeimos
+ */
+public class StagedScraper extends Scraper
+{
+	/**
+	 * The thread pool of the fetch stage, which is shut down after the bind
+	 * stage, since nested scrapes of the bind stage may use it.
+	 */
+	private final PipelineStage fetchStage;
+
+	/** The asynchronous executor of the fetch stage. */
+	private final AsyncExecutor fetchExecutor;
+
+	/** The asynchronous executor of the bind stage. */
+	private final AsyncExecutor bindExecutor;
+
+	/** The sources to scrape. */
+	private final List<ScraperSource> sources;
+
+	/** The targets of the sources in the same order. */
+	private final List<Object> targets;
+
+	/** The intake of lazily added targets or <code>null</code>. */
+	private final LazyIntake intake;
+
+	/** The metrics of the stages. */
+	private final List<StageMetrics> metrics;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param politeness
+	 *            The politeness options of the fetch stage or
+	 *            <code>null</code> if hosts are not limited.
+	 */
+	/* package */StagedScraper(
+			PipelineStage fetchStage,
+			PipelineStage bindStage,
+			PolitenessOptions politeness,
+			List<ScraperSource> sources,
+			List<Object> targets,
+			LazyIntake intake)
+	{
+		this.fetchStage = fetchStage;
+		this.fetchExecutor = AsyncExecutor.createOrGetCurrent(fetchStage, false);
+		this.bindExecutor = AsyncExecutor.createOrGetCurrent(bindStage, true);
+		if (politeness != null)
+		{
+			this.fetchExecutor.setPoliteness(politeness);
+			this.bindExecutor.shareHostScheduler(this.fetchExecutor);
+		}
+		this.sources = sources;
+		this.targets = targets;
+		this.intake = intake;
+		this.metrics = Arrays.<StageMetrics> asList(fetchStage, bindStage);
+		this.fetchExecutor.cancelOnFailure(this.bindExecutor);
+		this.bindExecutor.cancelOnFailure(this.fetchExecutor);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void scrape() throws ScraperException
+	{
+		for (int i = 0; i < this.sources.size(); i++)
+		{
+			ScraperSource source = this.sources.get(i);
+			this.fetchExecutor.asyncForHost(
+					source.getHost(),
+					fetch(source, this.targets.get(i)));
+		}
+
+		Throwable failure = null;
+		try
+		{
+			if (this.intake != null)
+			{
+				this.intake.submitAll(
+						this.fetchExecutor,
+						new LazyTargetSubmitter());
+			}
+			this.fetchExecutor.await();
+		}
+		catch (ScraperException e)
+		{
+			failure = e;
+		}
+		catch (RuntimeException e)
+		{
+			failure = e;
+		}
+		catch (Error e)
+		{
+			failure = e;
+		}
+		awaitBindStage(failure);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The future of a target completes after the target is fetched and bound
+	 * including its nested scrapes. Lazily added targets are pulled without
+	 * blocking like in {@link ThreadedScraper#scrapeAsync()}.
+	 */
+	@Override
+	public ScrapeFuture scrapeAsync()
+	{
+		List<CompletableFuture<Object>> futures = new ArrayList<CompletableFuture<Object>>();
+		for (int i = 0; i < this.sources.size(); i++)
+		{
+			ScraperSource source = this.sources.get(i);
+			futures.add(this.fetchExecutor.asyncForHost(
+					source.getHost(),
+					fetch(source, this.targets.get(i)),
+					this.targets.get(i)));
+		}
+
+		List<CompletableFuture<?>> completions = new ArrayList<CompletableFuture<?>>(futures);
+		if (this.intake != null)
+		{
+			completions.add(this.intake.getCompletion());
+			this.intake.submitAsync(this.fetchExecutor, new LazyTargetSubmitter());
+		}
+
+		CompletableFuture<Void> all = this.bindExecutor.whenAll(completions).whenComplete(
+				new BiConsumer<Void, Throwable>()
+				{
+					@Override
+					public void accept(Void result, Throwable failure)
+					{
+						StagedScraper.this.fetchStage.shutdown();
+					}
+				});
+		return new ScrapeFuture(all, futures);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Targets are timed from the start of their fetch till they are bound.
+	 */
+	@Override
+	public ScrapeSummary scrapeBatch() throws ScraperException
+	{
+		final SummaryCollector collector = new SummaryCollector();
+		for (int i = 0; i < this.sources.size(); i++)
+		{
+			ScraperSource source = this.sources.get(i);
+			Object target = this.targets.get(i);
+			collector.submit(
+					this.fetchExecutor,
+					source,
+					target,
+					fetch(source, target));
+		}
+
+		Throwable failure = null;
+		try
+		{
+			if (this.intake != null)
+			{
+				this.intake.submitAll(
+						this.fetchExecutor,
+						new LazyIntake.Submitter()
+						{
+							@Override
+							public CompletableFuture<?> submit(
+									ScraperSource source,
+									Object target)
+							{
+								return collector.submit(
+										StagedScraper.this.fetchExecutor,
+										source,
+										target,
+										fetch(source, target));
+							}
+						});
+			}
+			this.fetchExecutor.await();
+		}
+		catch (ScraperException e)
+		{
+			failure = e;
+		}
+		catch (RuntimeException e)
+		{
+			failure = e;
+		}
+		catch (Error e)
+		{
+			failure = e;
+		}
+		awaitBindStage(failure);
+		return collector.getSummary();
+	}
+
+	/**
+	 * Waits for the bind stage after the fetch stage has finished, shuts down
+	 * the fetch stage and rethrows the first failure of both stages. A failure
+	 * of one stage cancels the other one.
+	 * 
+	 * @param fetchFailure
+	 *            The failure of the fetch stage or <code>null</code>.
+	 */
+	private void awaitBindStage(Throwable fetchFailure) throws ScraperException
+	{
+		if (fetchFailure != null)
+		{
+			this.bindExecutor.cancel(fetchFailure);
+		}
+
+		try
+		{
+			this.bindExecutor.await();
+		}
+		catch (ScraperException e)
+		{
+			if (fetchFailure == null)
+			{
+				throw e;
+			}
+		}
+		catch (RuntimeException e)
+		{
+			if (fetchFailure == null)
+			{
+				throw e;
+			}
+		}
+		catch (Error e)
+		{
+			if (fetchFailure == null)
+			{
+				throw e;
+			}
+		}
+		finally
+		{
+			this.fetchStage.shutdown();
+		}
+		AsyncExecutor.rethrow(fetchFailure);
+	}
+
+	/**
+	 * @return The task fetching the source and scheduling the binding to the
+	 *         target.
+	 */
+	private Callable<Void> fetch(final ScraperSource source, final Object target)
+	{
+		return new Callable<Void>()
+		{
+			@Override
+			public Void call() throws ScraperException
+			{
+				bind(source.fetch(), target);
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Schedules binding the fetched source to the target. The binding is
+	 * tracked by the completion of the fetch task, so the future of the target
+	 * completes after it is bound.
+	 */
+	private void bind(final ScraperSource fetched, final Object target)
+	{
+		this.bindExecutor.async(new Callable<Void>()
+		{
+			@Override
+			public Void call() throws ScraperException
+			{
+				new AnnotatedScraper(fetched, target).scrape();
+				return null;
+			}
+		});
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<StageMetrics> getStageMetrics()
+	{
+		return this.metrics;
+	}
+
+	/** Submits the fetch of a lazily added target to the fetch stage. */
+	private class LazyTargetSubmitter implements LazyIntake.Submitter
+	{
+		/** {@inheritDoc} */
+		@Override
+		public CompletableFuture<?> submit(ScraperSource source, Object target)
+		{
+			return StagedScraper.this.fetchExecutor.asyncForHost(
+					source.getHost(),
+					fetch(source, target),
+					target);
+		}
+	}
+}
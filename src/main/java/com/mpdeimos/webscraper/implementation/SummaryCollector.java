@@ -0,0 +1,104 @@
+package com.mpdeimos.webscraper.implementation;
+
+import com.mpdeimos.webscraper.ScrapeSummary;
+import com.mpdeimos.webscraper.ScrapeSummary.TargetFailure;
+import com.mpdeimos.webscraper.ScraperSource;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Collects the outcome of the targets of a batch scrape. Targets are submitted
+ * with isolated failures, so a failing target does not abort the batch, and
+ * are timed from the start of their first task till their nested scrapes are
+ * finished.
+ *
+ * @author mpdeimos
+ */
+/* package */class SummaryCollector
+{
+	/** The start of the batch. */
+	private final long start = System.nanoTime();
+
+	/** The amount of successfully scraped targets. */
+	private final AtomicInteger succeeded = new AtomicInteger();
+
+	/** The failed targets. */
+	private final Queue<TargetFailure> failures = new ConcurrentLinkedQueue<TargetFailure>();
+
+	/**
+	 * Submits the task scraping the target to the executor.
+	 *
+	 * @return The future of the target, which completes after the outcome has
+	 *         been recorded. It does not fail, since failures are recorded.
+	 */
+	public CompletableFuture<Object> submit(
+			AsyncExecutor executor,
+			final ScraperSource source,
+			final Object target,
+			final Callable<Void> task)
+	{
+		final AtomicLong taskStart = new AtomicLong();
+		Callable<Void> timedTask = new Callable<Void>()
+		{
+			@Override
+			public Void call() throws Exception
+			{
+				taskStart.set(System.nanoTime());
+				return task.call();
+			}
+		};
+
+		String host = null;
+		if (source != null)
+		{
+			host = source.getHost();
+		}
+		return executor.asyncForHost(host, timedTask, target, true).handle(
+				new BiFunction<Object, Throwable, Object>()
+				{
+					@Override
+					public Object apply(Object result, Throwable failure)
+					{
+						if (failure == null)
+						{
+							SummaryCollector.this.succeeded.incrementAndGet();
+							return result;
+						}
+
+						if (failure instanceof CompletionException
+								&& failure.getCause() != null)
+						{
+							failure = failure.getCause();
+						}
+						long duration = 0;
+						if (taskStart.get() != 0)
+						{
+							duration = System.nanoTime() - taskStart.get();
+						}
+						SummaryCollector.this.failures.add(new TargetFailure(
+								source,
+								target,
+								failure,
+								duration));
+						return target;
+					}
+				});
+	}
+
+	/** @return The summary of all targets finished so far. */
+	public ScrapeSummary getSummary()
+	{
+		return new ScrapeSummary(
+				this.succeeded.get(),
+				new ArrayList<TargetFailure>(this.failures),
+				System.nanoTime() - this.start);
+	}
+}
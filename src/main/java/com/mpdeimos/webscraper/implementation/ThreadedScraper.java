@@ -1,10 +1,16 @@
 package com.mpdeimos.webscraper.implementation;
 
+import com.mpdeimos.webscraper.ScrapeFuture;
+import com.mpdeimos.webscraper.ScrapeSummary;
 import com.mpdeimos.webscraper.Scraper;
 import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.ScraperSource;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * {@link Scraper} impelmentation that is capable for scraping multiple
@@ -20,32 +26,221 @@ public class ThreadedScraper extends Scraper
 	/** The passed scrapers to be executed. */
 	private final List<? extends Scraper> scrapers;
 
+	/** The targets of the scrapers, used as results of asynchronous scrapes. */
+	private final List<?> targets;
+
+	/**
+	 * The sources of the scrapers in the same order, used for scheduling
+	 * scrapes per host, or <code>null</code>.
+	 */
+	private final List<ScraperSource> sources;
+
+	/**
+	 * The intake of lazily added targets, which are scraped after the
+	 * {@link #scrapers}, or <code>null</code>.
+	 */
+	private final LazyIntake intake;
+
 	/** Constructor. */
 	public ThreadedScraper(
 			AsyncExecutor executor,
 			List<? extends Scraper> scrapers)
+	{
+		this(executor, scrapers, Collections.nCopies(scrapers.size(), null));
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param targets
+	 *            The targets of the scrapers in the same order.
+	 */
+	public ThreadedScraper(
+			AsyncExecutor executor,
+			List<? extends Scraper> scrapers,
+			List<?> targets)
+	{
+		this(executor, scrapers, targets, null, null);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param targets
+	 *            The targets of the scrapers in the same order.
+	 * @param sources
+	 *            The sources of the scrapers in the same order or
+	 *            <code>null</code>.
+	 * @param intake
+	 *            The intake of lazily added targets or <code>null</code>.
+	 */
+	/* package */ThreadedScraper(
+			AsyncExecutor executor,
+			List<? extends Scraper> scrapers,
+			List<?> targets,
+			List<ScraperSource> sources,
+			LazyIntake intake)
 	{
 		this.executor = executor;
 		this.scrapers = scrapers;
+		this.targets = targets;
+		this.sources = sources;
+		this.intake = intake;
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public void scrape() throws ScraperException
 	{
-		for (final Scraper scraper : this.scrapers)
+		for (int i = 0; i < this.scrapers.size(); i++)
+		{
+			this.executor.asyncForHost(getHost(i), task(this.scrapers.get(i)));
+		}
+
+		try
+		{
+			submitLazyTargets(new LazyTargetSubmitter());
+		}
+		finally
+		{
+			this.executor.await();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The future of a target completes after the target and all its nested
+	 * scrapes are finished. Lazily added targets have no futures of their own.
+	 * They are pulled without blocking: the calling thread submits the first
+	 * window of targets and each completed target pulls further ones.
+	 */
+	@Override
+	public ScrapeFuture scrapeAsync()
+	{
+		List<CompletableFuture<Object>> futures = new ArrayList<CompletableFuture<Object>>();
+		for (int i = 0; i < this.scrapers.size(); i++)
+		{
+			futures.add(this.executor.asyncForHost(
+					getHost(i),
+					task(this.scrapers.get(i)),
+					(Object) this.targets.get(i)));
+		}
+
+		List<CompletableFuture<?>> completions = new ArrayList<CompletableFuture<?>>(futures);
+		if (this.intake != null)
+		{
+			completions.add(this.intake.getCompletion());
+			this.intake.submitAsync(this.executor, new LazyTargetSubmitter());
+		}
+
+		return new ScrapeFuture(this.executor.whenAll(completions), futures);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public ScrapeSummary scrapeBatch() throws ScraperException
+	{
+		final SummaryCollector collector = new SummaryCollector();
+		for (int i = 0; i < this.scrapers.size(); i++)
+		{
+			ScraperSource source = null;
+			if (this.sources != null)
+			{
+				source = this.sources.get(i);
+			}
+			collector.submit(
+					this.executor,
+					source,
+					this.targets.get(i),
+					task(this.scrapers.get(i)));
+		}
+
+		try
 		{
-			this.executor.async(new Callable<Void>()
+			submitLazyTargets(new LazyIntake.Submitter()
 			{
 				@Override
-				public Void call() throws ScraperException
+				public CompletableFuture<?> submit(
+						ScraperSource source,
+						Object target)
 				{
-					scraper.scrape();
-					return null;
+					return collector.submit(
+							ThreadedScraper.this.executor,
+							source,
+							target,
+							task(new AnnotatedScraper(source, target)));
 				}
 			});
 		}
+		finally
+		{
+			this.executor.await();
+		}
+		return collector.getSummary();
+	}
+
+	/**
+	 * Submits the lazily added targets, if any. Nested scrapes pull them
+	 * without blocking, since waiting for the window on a thread of the pool
+	 * could dead-lock small pools. Instead, the current task waits for the
+	 * lazily added targets like for its other nested scrapes.
+	 */
+	private void submitLazyTargets(LazyIntake.Submitter submitter)
+			throws ScraperException
+	{
+		if (this.intake == null)
+		{
+			return;
+		}
 
-		this.executor.await();
+		if (AsyncExecutor.isNested())
+		{
+			this.executor.track(this.intake.getCompletion());
+			this.intake.submitAsync(this.executor, submitter);
+			return;
+		}
+		this.intake.submitAll(this.executor, submitter);
+	}
+
+	/**
+	 * @return The host of the source of the scraper at the given index or
+	 *         <code>null</code> if unknown.
+	 */
+	private String getHost(int index)
+	{
+		if (this.sources == null)
+		{
+			return null;
+		}
+		return this.sources.get(index).getHost();
+	}
+
+	/** @return The task running the given scraper. */
+	private static Callable<Void> task(final Scraper scraper)
+	{
+		return new Callable<Void>()
+		{
+			@Override
+			public Void call() throws ScraperException
+			{
+				scraper.scrape();
+				return null;
+			}
+		};
+	}
+
+	/** Submits the scrape of a lazily added target to the executor. */
+	private class LazyTargetSubmitter implements LazyIntake.Submitter
+	{
+		/** {@inheritDoc} */
+		@Override
+		public CompletableFuture<?> submit(ScraperSource source, Object target)
+		{
+			return ThreadedScraper.this.executor.asyncForHost(
+					source.getHost(),
+					task(new AnnotatedScraper(source, target)),
+					target);
+		}
 	}
 }
@@ -1,5 +1,6 @@
 package com.mpdeimos.webscraper.implementation;
 
+import com.mpdeimos.webscraper.PolitenessOptions;
 import com.mpdeimos.webscraper.Scraper;
 import com.mpdeimos.webscraper.Scraper.ScraperBuilder;
 import com.mpdeimos.webscraper.ScraperSource;
@@ -7,6 +8,10 @@ import com.mpdeimos.webscraper.ScraperSource.ScraperSourceProvider;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.jsoup.nodes.Element;
 
@@ -24,25 +29,163 @@ public class ThreadedScraperBuilder implements ScraperBuilder
 	/** The amount of threads the scraper should use. */
 	private int nThreads = Runtime.getRuntime().availableProcessors();
 
+	/**
+	 * The maximum amount of concurrent scrapes on virtual threads or
+	 * <code>0</code> if a fixed size thread pool is used.
+	 */
+	private int maxVirtualConcurrency = 0;
+
+	/** Flag whether the scraper runs on a work-stealing fork/join pool. */
+	private boolean workStealing = false;
+
+	/**
+	 * The parallelism of the fetch stage of a staged scraper or
+	 * <code>0</code> if the scraper is not staged.
+	 */
+	private int fetchParallelism = 0;
+
+	/** The parallelism of the bind stage of a staged scraper. */
+	private int bindParallelism;
+
+	/** The queue capacity of the bind stage of a staged scraper. */
+	private int queueCapacity;
+
+	/** The sources of the {@link #scrapers} in the same order. */
+	private final ArrayList<ScraperSource> sources = new ArrayList<ScraperSource>();
+
+	/** The iterators of lazily added targets. */
+	private final ArrayList<Iterator<? extends ScraperSourceProvider>> lazyTargets = new ArrayList<Iterator<? extends ScraperSourceProvider>>();
+
+	/**
+	 * The maximum amount of lazily added targets in flight or <code>0</code>
+	 * for twice the amount of threads.
+	 */
+	private int maxInFlight = 0;
+
+	/**
+	 * The politeness options for scraping hosts or <code>null</code> if hosts
+	 * are not limited.
+	 */
+	private PolitenessOptions politeness = null;
+
+	/**
+	 * The shared thread pool the scraper runs on or <code>null</code> if the
+	 * scraper should use an own pool.
+	 */
+	private final ExecutorService sharedPool;
+
 	/** The annotated scrapers that are scraped within the threaded scraper. */
 	private final ArrayList<Scraper> scrapers = new ArrayList<Scraper>();
 
+	/** The targets of the {@link #scrapers} in the same order. */
+	private final ArrayList<Object> targets = new ArrayList<Object>();
+
+	/** Constructor for scrapers with an own thread pool. */
+	public ThreadedScraperBuilder()
+	{
+		this(null);
+	}
+
+	/**
+	 * Constructor for scrapers running on a shared thread pool, which is not
+	 * shut down after scraping.
+	 */
+	public ThreadedScraperBuilder(ExecutorService sharedPool)
+	{
+		this.sharedPool = sharedPool;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public Scraper build()
 	{
-		AsyncExecutor executor = AsyncExecutor.createOrGetCurrent(this.nThreads);
-		return new ThreadedScraper(executor, this.scrapers);
+		// nested scrapes run on the executor of the outer scrape, so neither
+		// stages are allocated nor politeness limits installed for them
+		boolean nested = AsyncExecutor.isNested();
+		if (this.sharedPool == null && this.fetchParallelism > 0 && !nested)
+		{
+			return buildStaged();
+		}
+
+		AsyncExecutor executor;
+		if (this.sharedPool != null)
+		{
+			executor = AsyncExecutor.createOrGetCurrent(this.sharedPool);
+		}
+		else if (this.workStealing)
+		{
+			if (this.politeness != null)
+			{
+				throw new IllegalStateException(
+						"Politeness limits are not supported on work-stealing pools"); //$NON-NLS-1$
+			}
+			executor = AsyncExecutor.createOrGetCurrentForkJoin(this.nThreads);
+		}
+		else if (this.maxVirtualConcurrency > 0)
+		{
+			executor = AsyncExecutor.createOrGetCurrentVirtual(this.maxVirtualConcurrency);
+		}
+		else
+		{
+			executor = AsyncExecutor.createOrGetCurrent(this.nThreads);
+		}
+		if (this.politeness != null && !nested)
+		{
+			executor.setPoliteness(this.politeness);
+		}
+		return new ThreadedScraper(
+				executor,
+				this.scrapers,
+				this.targets,
+				this.sources,
+				createIntake(this.nThreads));
+	}
+
+	/**
+	 * @return The intake of lazily added targets or <code>null</code> if
+	 *         there are none.
+	 * @param nThreads
+	 *            The amount of threads, defining the default amount of targets
+	 *            in flight.
+	 */
+	private LazyIntake createIntake(int nThreads)
+	{
+		if (this.lazyTargets.isEmpty())
+		{
+			return null;
+		}
+
+		int window = this.maxInFlight;
+		if (window == 0)
+		{
+			window = 2 * nThreads;
+		}
+		return new LazyIntake(this.lazyTargets, window);
+	}
+
+	/** Builds a {@link StagedScraper}. */
+	private Scraper buildStaged()
+	{
+		return new StagedScraper(
+				new PipelineStage(
+						"Fetch", //$NON-NLS-1$
+						this.fetchParallelism,
+						new LinkedBlockingQueue<Runnable>()),
+				new PipelineStage(
+						"Bind", //$NON-NLS-1$
+						this.bindParallelism,
+						new ArrayBlockingQueue<Runnable>(this.queueCapacity)),
+				this.politeness,
+				this.sources,
+				this.targets,
+				createIntake(this.fetchParallelism + this.bindParallelism));
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public ScraperBuilder add(ScraperSourceProvider sourceAndTarget)
 	{
-		this.scrapers.add(new AnnotatedScraper(
-				sourceAndTarget.getSource(),
-				sourceAndTarget));
-		return this;
+		return add(sourceAndTarget.getSource(), sourceAndTarget);
 	}
 
 	/** {@inheritDoc} */
@@ -67,11 +210,35 @@ public class ThreadedScraperBuilder implements ScraperBuilder
 		return this;
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	public ScraperBuilder add(
+			Iterator<? extends ScraperSourceProvider> sourceAndTargets)
+	{
+		this.lazyTargets.add(sourceAndTargets);
+		return this;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public ScraperBuilder setMaxInFlight(int maxInFlight)
+	{
+		if (maxInFlight <= 0)
+		{
+			throw new IllegalArgumentException(
+					"Targets in flight must be positive: " + maxInFlight); //$NON-NLS-1$
+		}
+		this.maxInFlight = maxInFlight;
+		return this;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public ScraperBuilder add(ScraperSource source, Object target)
 	{
 		this.scrapers.add(new AnnotatedScraper(source, target));
+		this.sources.add(source);
+		this.targets.add(target);
 		return this;
 	}
 
@@ -82,11 +249,90 @@ public class ThreadedScraperBuilder implements ScraperBuilder
 		return add(ScraperSource.fromElement(source), target);
 	}
 
-	/** {@inheritDoc} */
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Has no effect if the scraper runs on a shared thread pool.
+	 */
 	@Override
 	public ScraperBuilder setParallelism(int nThreads)
 	{
 		this.nThreads = nThreads;
 		return this;
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Has no effect if the scraper runs on a shared thread pool.
+	 */
+	@Override
+	public ScraperBuilder setVirtualThreads(int maxConcurrency)
+	{
+		if (maxConcurrency <= 0)
+		{
+			throw new IllegalArgumentException(
+					"Concurrency must be positive: " + maxConcurrency); //$NON-NLS-1$
+		}
+		this.maxVirtualConcurrency = maxConcurrency;
+		this.workStealing = false;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Has no effect if the scraper runs on a shared thread pool.
+	 */
+	@Override
+	public ScraperBuilder setWorkStealing()
+	{
+		this.workStealing = true;
+		this.maxVirtualConcurrency = 0;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Takes precedence over the other execution modes, but has no effect if
+	 * the scraper runs on a shared thread pool or is nested in another scrape.
+	 */
+	@Override
+	public ScraperBuilder setStages(
+			int fetchParallelism,
+			int bindParallelism,
+			int queueCapacity)
+	{
+		if (fetchParallelism <= 0 || bindParallelism <= 0
+				|| queueCapacity <= 0)
+		{
+			throw new IllegalArgumentException(
+					"Stage parallelism and queue capacity must be positive"); //$NON-NLS-1$
+		}
+		this.fetchParallelism = fetchParallelism;
+		this.bindParallelism = bindParallelism;
+		this.queueCapacity = queueCapacity;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Not supported on a work-stealing pool, so {@link #build()} throws an
+	 * {@link IllegalStateException} if combined with
+	 * {@link #setWorkStealing()}. Ignored by nested scrapers, which share the
+	 * limits of the outermost scraper.
+	 */
+	@Override
+	public ScraperBuilder setPoliteness(PolitenessOptions options)
+	{
+		if (options.maxConnectionsPerHost <= 0 || options.minDelayMillis < 0
+				|| options.requestsPerSecond < 0 || options.burst <= 0)
+		{
+			throw new IllegalArgumentException("Invalid politeness options"); //$NON-NLS-1$
+		}
+		this.politeness = options;
+		return this;
+	}
 }
@@ -1,6 +1,7 @@
 package com.mpdeimos.webscraper.selection;
 
 import com.mpdeimos.webscraper.ScraperContext;
+import com.mpdeimos.webscraper.Stateless;
 
 import org.jsoup.nodes.Element;
 
@@ -9,6 +10,7 @@ import org.jsoup.nodes.Element;
  * 
  * @author mpdeimos
  */
+@Stateless
 public class DefaultSelector implements Selector
 {
 	/** {@inheritDoc} */
@@ -1,6 +1,7 @@
 package com.mpdeimos.webscraper.selection;
 
 import com.mpdeimos.webscraper.ScraperContext;
+import com.mpdeimos.webscraper.Stateless;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -13,6 +14,7 @@ import org.jsoup.nodes.Element;
  * 
  * @author mpdeimos
  */
+@Stateless
 public class RelativeElementSelector implements Selector
 {
 	/** Option annotation for {@link RelativeElementSelector}. */
@@ -38,7 +40,7 @@ public class RelativeElementSelector implements Selector
 	{
 		Element root = context.getRootElement();
 
-		Option options = context.getTargetField().getAnnotation(Option.class);
+		Option options = context.getOption(Option.class);
 		if (options == null)
 		{
 			return root;
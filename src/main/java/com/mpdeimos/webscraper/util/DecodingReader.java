@@ -0,0 +1,88 @@
+package com.mpdeimos.webscraper.util;
+
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader decoding the bytes of a buffer, e.g. of a memory-mapped file, in
+ * chunks while reading. Only a chunk of the decoded text is on the heap at
+ * once. Malformed input is replaced.
+ *
+ * @author mpdeimos
+ */
+public class DecodingReader extends Reader
+{
+	/** The amount of characters decoded at once. */
+	private static final int CHUNK_SIZE = 8192;
+
+	/** The bytes to decode. */
+	private final ByteBuffer bytes;
+
+	/** The decoder of the bytes. */
+	private final CharsetDecoder decoder;
+
+	/** The decoded characters that have not been read yet. */
+	private final CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+
+	/** Flag whether all bytes are decoded and the decoder is flushed. */
+	private boolean flushed = false;
+
+	/** Constructor. */
+	public DecodingReader(ByteBuffer bytes, Charset charset)
+	{
+		this.bytes = bytes;
+		this.decoder = charset.newDecoder().onMalformedInput(
+				CodingErrorAction.REPLACE).onUnmappableCharacter(
+				CodingErrorAction.REPLACE);
+		this.chars.flip();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int read(char[] buffer, int offset, int length)
+	{
+		if (length == 0)
+		{
+			return 0;
+		}
+
+		while (!this.chars.hasRemaining())
+		{
+			if (this.flushed)
+			{
+				return -1;
+			}
+			decodeChunk();
+		}
+
+		int read = Math.min(length, this.chars.remaining());
+		this.chars.get(buffer, offset, read);
+		return read;
+	}
+
+	/** Decodes the next chunk of characters. */
+	private void decodeChunk()
+	{
+		this.chars.clear();
+		// the decoder must decode the end of the input before flushing, even
+		// if there are no bytes
+		this.decoder.decode(this.bytes, this.chars, true);
+		if (!this.bytes.hasRemaining()
+				&& this.decoder.flush(this.chars).isUnderflow())
+		{
+			this.flushed = true;
+		}
+		this.chars.flip();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close()
+	{
+		// the buffer is released by the garbage collector
+	}
+}
@@ -37,4 +37,96 @@ public class Strings
 		}
 		return input;
 	}
+
+	/**
+	 * Normalizes the whitespace of the input string in a single pass. This is
+	 * equivalent to replacing nonbreaking spaces with spaces, collapsing
+	 * whitespace sequences (<code>\s+</code>) to a single space and trimming
+	 * the result. If no normalization is necessary, the input string is
+	 * returned.
+	 * 
+	 * @param input
+	 *            The input string to normalize
+	 * @return The normalized string
+	 */
+	public static String normalizeWhitespace(String input)
+	{
+		int start = 0;
+		int end = input.length();
+		while (start < end && isTrimmed(input.charAt(start)))
+		{
+			start++;
+		}
+		while (end > start && isTrimmed(input.charAt(end - 1)))
+		{
+			end--;
+		}
+
+		char[] result = null;
+		int length = 0;
+		boolean previousWhitespace = false;
+		for (int i = start; i < end; i++)
+		{
+			char c = input.charAt(i);
+			boolean whitespace = isWhitespace(c);
+			if (whitespace && (previousWhitespace || c != ' '))
+			{
+				if (result == null)
+				{
+					result = new char[end - start];
+					input.getChars(start, i, result, 0);
+					length = i - start;
+				}
+				if (!previousWhitespace)
+				{
+					result[length++] = ' ';
+				}
+			}
+			else if (result != null)
+			{
+				result[length++] = c;
+			}
+			else
+			{
+				length++;
+			}
+			previousWhitespace = whitespace;
+		}
+
+		if (result == null)
+		{
+			return input.substring(start, end);
+		}
+		return new String(result, 0, length);
+	}
+
+	/**
+	 * @return <code>true</code> if the character is a whitespace character
+	 *         (<code>\s</code>) or a nonbreaking space.
+	 */
+	private static boolean isWhitespace(char c)
+	{
+		switch (c)
+		{
+		case ' ':
+		case '\t':
+		case '\n':
+		case '\u000B':
+		case '\f':
+		case '\r':
+		case '\u00a0':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the character is removed by
+	 *         {@link String#trim()} after whitespace normalization.
+	 */
+	private static boolean isTrimmed(char c)
+	{
+		return c <= ' ' || c == '\u00a0';
+	}
 }
@@ -1,12 +1,14 @@
 package com.mpdeimos.webscraper.validation;
 
 import com.mpdeimos.webscraper.ScraperContext;
+import com.mpdeimos.webscraper.Stateless;
 
 /**
  * Default validator that is always passing.
  * 
  * @author mpdeimos
  */
+@Stateless
 public class DefaultValidator implements Validator
 {
 	/** {@inheritDoc} */
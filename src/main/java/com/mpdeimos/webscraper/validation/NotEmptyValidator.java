@@ -1,12 +1,14 @@
 package com.mpdeimos.webscraper.validation;
 
 import com.mpdeimos.webscraper.ScraperContext;
+import com.mpdeimos.webscraper.Stateless;
 
 /**
  * Validator for enforcing non-empty text.
  * 
  * @author mpdeimos
  */
+@Stateless
 public class NotEmptyValidator implements Validator
 {
 	/** {@inheritDoc} */
@@ -0,0 +1,59 @@
+package com.mpdeimos.webscraper;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.jsoup.nodes.Element;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link ScraperSource}.
+ *
+ * @author mpdeimos
+ */
+public class ScraperSourceTest
+{
+	/** The folder of the scraped files. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Tests that files are decoded with the given charset. */
+	@Test
+	public void testFromPath() throws IOException, ScraperException
+	{
+		StringBuilder html = new StringBuilder();
+		for (int i = 0; i < 10000; i++)
+		{
+			html.append("<p>\u00fcber \u20ac\ud83d\ude00").append(i).append("</p>"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		// supplementary characters exceed the average size of UTF-32
+		for (String charset : new String[] { "UTF-8", "UTF-16", "UTF-32" }) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		{
+			Path file = this.folder.newFile().toPath();
+			Files.write(file, html.toString().getBytes(charset));
+
+			Element element = ScraperSource.fromPath(
+					file,
+					Charset.forName(charset)).getElement();
+			Assert.assertEquals(10000, element.select("p").size()); //$NON-NLS-1$
+			Assert.assertEquals("\u00fcber \u20ac\ud83d\ude009999", //$NON-NLS-1$
+					element.select("p").last().text()); //$NON-NLS-1$
+			Assert.assertEquals(file.toUri().toString(), element.baseUri());
+		}
+	}
+
+	/** Tests that missing files fail on retrieving the element. */
+	@Test(expected = ScraperException.class)
+	public void testFromMissingPath() throws ScraperException
+	{
+		ScraperSource.fromPath(
+				this.folder.getRoot().toPath().resolve("missing.html"), //$NON-NLS-1$
+				Charset.forName("UTF-8")).getElement(); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,137 @@
+package com.mpdeimos.webscraper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.jsoup.nodes.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mpdeimos.webscraper.Scraper.ScraperBuilder;
+import com.mpdeimos.webscraper.ScraperSource.ScraperSourceProvider;
+
+/**
+ * Tests the default methods of {@link Scraper} and {@link ScraperBuilder}.
+ *
+ * @author mpdeimos
+ */
+public class ScraperTest
+{
+	/** Tests that batches report runtime exceptions as failed target. */
+	@Test
+	public void testBatchReportsRuntimeException() throws ScraperException
+	{
+		final IllegalStateException failure = new IllegalStateException();
+		ScrapeSummary summary = new Scraper()
+		{
+			@Override
+			public void scrape()
+			{
+				throw failure;
+			}
+		}.scrapeBatch();
+
+		Assert.assertEquals(0, summary.getSucceededCount());
+		Assert.assertEquals(1, summary.getFailures().size());
+		Assert.assertSame(failure, summary.getFailures().get(0).getCause());
+	}
+
+	/**
+	 * Tests that builders implementing only the basic methods reject optional
+	 * features and add streams as iterators.
+	 */
+	@Test
+	public void testBuilderDefaults()
+	{
+		MinimalBuilder builder = new MinimalBuilder();
+		try
+		{
+			builder.setWorkStealing();
+			Assert.fail();
+		}
+		catch (UnsupportedOperationException e)
+		{
+			// expected
+		}
+
+		try
+		{
+			builder.add(Stream.<ScraperSourceProvider> empty());
+			Assert.fail();
+		}
+		catch (UnsupportedOperationException e)
+		{
+			// expected, since streams are added as iterators
+		}
+	}
+
+	/** Builder implementing only the methods of the original interface. */
+	private static class MinimalBuilder implements ScraperBuilder
+	{
+		/** The added targets. */
+		private final List<Object> targets = new ArrayList<Object>();
+
+		/** {@inheritDoc} */
+		@Override
+		public Scraper build()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public ScraperBuilder add(ScraperSourceProvider sourceAndTarget)
+		{
+			this.targets.add(sourceAndTarget);
+			return this;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public ScraperBuilder add(ScraperSourceProvider... sourceAndTargets)
+		{
+			for (ScraperSourceProvider sourceAndTarget : sourceAndTargets)
+			{
+				add(sourceAndTarget);
+			}
+			return this;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public ScraperBuilder add(
+				Collection<ScraperSourceProvider> sourceAndTargets)
+		{
+			for (ScraperSourceProvider sourceAndTarget : sourceAndTargets)
+			{
+				add(sourceAndTarget);
+			}
+			return this;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public ScraperBuilder add(ScraperSource source, Object target)
+		{
+			this.targets.add(target);
+			return this;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public ScraperBuilder add(Element source, Object target)
+		{
+			this.targets.add(target);
+			return this;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public ScraperBuilder setParallelism(int nThreads)
+		{
+			return this;
+		}
+	}
+}
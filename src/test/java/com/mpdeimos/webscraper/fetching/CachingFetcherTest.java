@@ -0,0 +1,337 @@
+package com.mpdeimos.webscraper.fetching;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mpdeimos.webscraper.ScraperSource.ConnectionOptions;
+
+/**
+ * Tests {@link CachingFetcher}.
+ *
+ * @author mpdeimos
+ */
+public class CachingFetcherTest
+{
+	/** The folder of the cache. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Tests that cached entries are revalidated and served from disk. */
+	@Test
+	public void testRevalidation() throws IOException
+	{
+		RevalidatingFetcher server = new RevalidatingFetcher();
+		CachingFetcher fetcher = new CachingFetcher(
+				server,
+				this.folder.getRoot().toPath(),
+				1 << 20,
+				60000);
+
+		FetchResponse first = fetch(fetcher, "http://example.com/a"); //$NON-NLS-1$
+		Assert.assertEquals(200, first.getStatusCode());
+		Assert.assertNull(server.lastHeaders.get("If-None-Match")); //$NON-NLS-1$
+
+		FetchResponse second = fetch(fetcher, "http://example.com/a"); //$NON-NLS-1$
+		Assert.assertEquals("\"v1\"", server.lastHeaders.get("If-None-Match")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals(1, server.notModified);
+		Assert.assertEquals(200, second.getStatusCode());
+		Assert.assertEquals("<p>http://example.com/a</p>", //$NON-NLS-1$
+				new String(second.getBody(), "UTF-8")); //$NON-NLS-1$
+		Assert.assertEquals("text/html; charset=UTF-8", //$NON-NLS-1$
+				second.getHeader("content-type")); //$NON-NLS-1$
+		Assert.assertNull(second.getHeader("Content-Encoding")); //$NON-NLS-1$
+
+		// the cache survives new instances
+		CachingFetcher reopened = new CachingFetcher(
+				server,
+				this.folder.getRoot().toPath(),
+				1 << 20,
+				60000);
+		fetch(reopened, "http://example.com/a"); //$NON-NLS-1$
+		Assert.assertEquals(2, server.notModified);
+	}
+
+	/** Tests that entries are evicted if exceeding the size or age. */
+	@Test
+	public void testEviction() throws IOException
+	{
+		RevalidatingFetcher server = new RevalidatingFetcher();
+		Path directory = this.folder.getRoot().toPath();
+
+		CachingFetcher small = new CachingFetcher(server, directory, 1, 60000);
+		fetch(small, "http://example.com/a"); //$NON-NLS-1$
+		fetch(small, "http://example.com/a"); //$NON-NLS-1$
+		Assert.assertEquals(0, server.notModified);
+
+		CachingFetcher expiring = new CachingFetcher(
+				server,
+				directory,
+				1 << 20,
+				-1);
+		fetch(expiring, "http://example.com/a"); //$NON-NLS-1$
+		fetch(expiring, "http://example.com/a"); //$NON-NLS-1$
+		Assert.assertEquals(0, server.notModified);
+	}
+
+	/**
+	 * Tests that responses that must not be stored or vary by request headers
+	 * are not cached.
+	 */
+	@Test
+	public void testNotStorable() throws IOException
+	{
+		RevalidatingFetcher server = new RevalidatingFetcher();
+		CachingFetcher fetcher = new CachingFetcher(
+				server,
+				this.folder.getRoot().toPath(),
+				1 << 20,
+				60000);
+
+		String[][] uncached = { { "Cache-Control", "max-age=60, no-store" }, //$NON-NLS-1$ //$NON-NLS-2$
+				{ "Cache-Control", "Private" }, //$NON-NLS-1$ //$NON-NLS-2$
+				{ "Vary", "Accept-Encoding, User-Agent" } }; //$NON-NLS-1$ //$NON-NLS-2$
+		for (String[] header : uncached)
+		{
+			server.extraHeaders.clear();
+			server.extraHeaders.put(header[0], Arrays.asList(header[1]));
+			String url = "http://example.com/" + header[1]; //$NON-NLS-1$
+			fetch(fetcher, url);
+			fetch(fetcher, url);
+			Assert.assertNull(server.lastHeaders.get("If-None-Match")); //$NON-NLS-1$
+		}
+		Assert.assertEquals(0, server.notModified);
+
+		server.extraHeaders.clear();
+		server.extraHeaders.put("Vary", Arrays.asList("Accept-Encoding")); //$NON-NLS-1$ //$NON-NLS-2$
+		fetch(fetcher, "http://example.com/encoded"); //$NON-NLS-1$
+		fetch(fetcher, "http://example.com/encoded"); //$NON-NLS-1$
+		Assert.assertEquals(1, server.notModified);
+	}
+
+	/** Tests that headers exceeding 64 KB are stored. */
+	@Test
+	public void testLongHeader() throws IOException
+	{
+		RevalidatingFetcher server = new RevalidatingFetcher();
+		CachingFetcher fetcher = new CachingFetcher(
+				server,
+				this.folder.getRoot().toPath(),
+				1 << 20,
+				60000);
+
+		char[] value = new char[100000];
+		Arrays.fill(value, '\u00e9');
+		server.extraHeaders.put("Link", Arrays.asList(new String(value))); //$NON-NLS-1$
+		fetch(fetcher, "http://example.com/a"); //$NON-NLS-1$
+		server.extraHeaders.clear();
+
+		FetchResponse cached = fetch(fetcher, "http://example.com/a"); //$NON-NLS-1$
+		Assert.assertEquals(1, server.notModified);
+		Assert.assertEquals(new String(value), cached.getHeader("Link")); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that headers and validators of a <code>304</code> response update
+	 * the stored entry.
+	 */
+	@Test
+	public void testRefreshOnNotModified() throws IOException
+	{
+		RevalidatingFetcher server = new RevalidatingFetcher();
+		CachingFetcher fetcher = new CachingFetcher(
+				server,
+				this.folder.getRoot().toPath(),
+				1 << 20,
+				60000);
+		fetch(fetcher, "http://example.com/a"); //$NON-NLS-1$
+
+		server.etags.add("\"v2\""); //$NON-NLS-1$
+		server.notModifiedHeaders.put("ETag", Arrays.asList("\"v2\"")); //$NON-NLS-1$ //$NON-NLS-2$
+		server.notModifiedHeaders.put("Cache-Control", //$NON-NLS-1$
+				Arrays.asList("max-age=60")); //$NON-NLS-1$
+		FetchResponse refreshed = fetch(fetcher, "http://example.com/a"); //$NON-NLS-1$
+		Assert.assertEquals("\"v2\"", refreshed.getHeader("ETag")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals("max-age=60", refreshed.getHeader("Cache-Control")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals("text/html; charset=UTF-8", //$NON-NLS-1$
+				refreshed.getHeader("Content-Type")); //$NON-NLS-1$
+
+		server.notModifiedHeaders.clear();
+		FetchResponse cached = fetch(fetcher, "http://example.com/a"); //$NON-NLS-1$
+		Assert.assertEquals("\"v2\"", server.lastHeaders.get("If-None-Match")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals(2, server.notModified);
+		Assert.assertEquals("max-age=60", cached.getHeader("Cache-Control")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals("<p>http://example.com/a</p>", //$NON-NLS-1$
+				new String(cached.getBody(), "UTF-8")); //$NON-NLS-1$
+	}
+
+	/** Tests that entries with corrupt body lengths are cache misses. */
+	@Test
+	public void testCorruptLength() throws IOException
+	{
+		for (int length : new int[] { -5, Integer.MAX_VALUE })
+		{
+			RevalidatingFetcher server = new RevalidatingFetcher();
+			Path directory = this.folder.newFolder().toPath();
+			CachingFetcher fetcher = new CachingFetcher(
+					server,
+					directory,
+					1 << 20,
+					60000);
+			FetchResponse first = fetch(fetcher, "http://example.com/a"); //$NON-NLS-1$
+			corruptBodyLength(directory, first.getBody().length, length);
+
+			FetchResponse response = fetch(fetcher, "http://example.com/a"); //$NON-NLS-1$
+			Assert.assertEquals(200, response.getStatusCode());
+			Assert.assertArrayEquals(first.getBody(), response.getBody());
+			Assert.assertNull(server.lastHeaders.get("If-None-Match")); //$NON-NLS-1$
+		}
+	}
+
+	/** Tests that bodies possibly truncated to the maximum size are not stored. */
+	@Test
+	public void testTruncatedNotStored() throws IOException
+	{
+		RevalidatingFetcher server = new RevalidatingFetcher();
+		CachingFetcher fetcher = new CachingFetcher(
+				server,
+				this.folder.getRoot().toPath(),
+				1 << 20,
+				60000);
+		ConnectionOptions options = new ConnectionOptions();
+		options.maxBodySize = "<p>http://example.com/a</p>".length(); //$NON-NLS-1$
+
+		Map<String, String> headers = Collections.<String, String> emptyMap();
+		fetcher.fetch("http://example.com/a", headers, options); //$NON-NLS-1$
+		fetcher.fetch("http://example.com/a", headers, options); //$NON-NLS-1$
+		Assert.assertNull(server.lastHeaders.get("If-None-Match")); //$NON-NLS-1$
+		Assert.assertEquals(0, server.notModified);
+	}
+
+	/**
+	 * Replaces the length of the body of the single entry in the directory,
+	 * which is stored after the headers at the end of the entry.
+	 */
+	private static void corruptBodyLength(
+			Path directory,
+			int bodyLength,
+			int corruptLength) throws IOException
+	{
+		File[] entries = directory.toFile().listFiles();
+		Assert.assertEquals(1, entries.length);
+		Path entry = entries[0].toPath();
+
+		ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+		InputStream in = new GZIPInputStream(Files.newInputStream(entry));
+		try
+		{
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				decompressed.write(buffer, 0, read);
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+
+		byte[] bytes = decompressed.toByteArray();
+		ByteBuffer.wrap(bytes).putInt(
+				bytes.length - bodyLength - 4,
+				corruptLength);
+		OutputStream out = new GZIPOutputStream(Files.newOutputStream(entry));
+		try
+		{
+			out.write(bytes);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/** Fetches the URL without additional headers. */
+	private static FetchResponse fetch(Fetcher fetcher, String url)
+			throws IOException
+	{
+		return fetcher.fetch(
+				url,
+				Collections.<String, String> emptyMap(),
+				new ConnectionOptions());
+	}
+
+	/**
+	 * Fetcher simulating a server with unchanged documents that honors
+	 * If-None-Match. Not Modified responses repeat the requested ETag.
+	 */
+	private static class RevalidatingFetcher implements Fetcher
+	{
+		/** The headers of the last request. */
+		private Map<String, String> lastHeaders;
+
+		/** The amount of Not Modified responses. */
+		private int notModified = 0;
+
+		/** Additional headers of successful responses. */
+		private final Map<String, List<String>> extraHeaders = new HashMap<String, List<String>>();
+
+		/** Additional headers of Not Modified responses. */
+		private final Map<String, List<String>> notModifiedHeaders = new HashMap<String, List<String>>();
+
+		/** The ETags matching the unchanged documents. */
+		private final Set<String> etags = new HashSet<String>(
+				Arrays.asList("\"v1\"")); //$NON-NLS-1$
+
+		/** {@inheritDoc} */
+		@Override
+		public FetchResponse fetch(
+				String url,
+				Map<String, String> headers,
+				ConnectionOptions options) throws IOException
+		{
+			this.lastHeaders = headers;
+			Map<String, List<String>> responseHeaders = new HashMap<String, List<String>>();
+			String etag = headers.get("If-None-Match"); //$NON-NLS-1$
+			if (this.etags.contains(etag))
+			{
+				this.notModified++;
+				responseHeaders.put("ETag", Arrays.asList(etag)); //$NON-NLS-1$
+				responseHeaders.putAll(this.notModifiedHeaders);
+				return new FetchResponse(url, 304, responseHeaders, new byte[0]);
+			}
+
+			responseHeaders.put("ETag", Arrays.asList("\"v1\"")); //$NON-NLS-1$ //$NON-NLS-2$
+
+			responseHeaders.put("Content-Type", //$NON-NLS-1$
+					Arrays.asList("text/html; charset=UTF-8")); //$NON-NLS-1$
+			responseHeaders.put("Content-Encoding", Arrays.asList("gzip")); //$NON-NLS-1$ //$NON-NLS-2$
+			responseHeaders.putAll(this.extraHeaders);
+			return new FetchResponse(
+					url,
+					200,
+					responseHeaders,
+					("<p>" + url + "</p>").getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+}
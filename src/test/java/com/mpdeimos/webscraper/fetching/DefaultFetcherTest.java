@@ -0,0 +1,316 @@
+package com.mpdeimos.webscraper.fetching;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.jsoup.UnsupportedMimeTypeException;
+import org.jsoup.nodes.Element;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.ScraperSource;
+import com.mpdeimos.webscraper.ScraperSource.ConnectionOptions;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests {@link DefaultFetcher} and its use by URL sources.
+ *
+ * @author mpdeimos
+ */
+public class DefaultFetcherTest
+{
+	/** The local HTTP server. */
+	private HttpServer server;
+
+	/** The amount of requests to the failing page. */
+	private final AtomicInteger failedRequests = new AtomicInteger();
+
+	/** Starts the server. */
+	@Before
+	public void setUp() throws IOException
+	{
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0); //$NON-NLS-1$
+		this.server.createContext("/page", new HttpHandler() //$NON-NLS-1$
+		{
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				String userAgent = exchange.getRequestHeaders().getFirst(
+						"User-Agent"); //$NON-NLS-1$
+				byte[] body = ("<p>caf\u00e9</p><a>" + userAgent + "</a>").getBytes( //$NON-NLS-1$ //$NON-NLS-2$
+						Charset.forName("ISO-8859-1")); //$NON-NLS-1$
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+				GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+				gzip.write(body);
+				gzip.close();
+
+				exchange.getResponseHeaders().add(
+						"Content-Type", "text/html; charset=iso-8859-1"); //$NON-NLS-1$ //$NON-NLS-2$
+				exchange.getResponseHeaders().add("Content-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+				respond(exchange, 200, compressed.toByteArray());
+			}
+		});
+		this.server.createContext("/fail", new HttpHandler() //$NON-NLS-1$
+		{
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				DefaultFetcherTest.this.failedRequests.incrementAndGet();
+				respond(exchange, 500, "error".getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		});
+		this.server.createContext("/redirect", new RedirectHandler("/page")); //$NON-NLS-1$ //$NON-NLS-2$
+		this.server.createContext("/loop", new RedirectHandler("/loop")); //$NON-NLS-1$ //$NON-NLS-2$
+		this.server.createContext("/ftp", //$NON-NLS-1$
+				new RedirectHandler("ftp://localhost/page")); //$NON-NLS-1$
+		this.server.createContext("/binary", new HttpHandler() //$NON-NLS-1$
+		{
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				exchange.getResponseHeaders().add(
+						"Content-Type", "application/octet-stream"); //$NON-NLS-1$ //$NON-NLS-2$
+				respond(exchange, 200, new byte[] { 0, 1, 2, 3 });
+			}
+		});
+		this.server.createContext("/large", new HttpHandler() //$NON-NLS-1$
+		{
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				exchange.getResponseHeaders().add("Content-Type", "text/html"); //$NON-NLS-1$ //$NON-NLS-2$
+				respond(exchange, 200, new byte[100000]);
+			}
+		});
+		this.server.start();
+	}
+
+	/** Stops the server. */
+	@After
+	public void tearDown()
+	{
+		this.server.stop(0);
+	}
+
+	/** Tests that compressed bodies are decoded with their charset. */
+	@Test
+	public void testFetchDecodesBody() throws IOException
+	{
+		ConnectionOptions options = new ConnectionOptions();
+		options.userAgent = "test-agent"; //$NON-NLS-1$
+		FetchResponse response = new DefaultFetcher().fetch(
+				url("/page"), //$NON-NLS-1$
+				Collections.<String, String> emptyMap(),
+				options);
+
+		Assert.assertEquals(200, response.getStatusCode());
+		Assert.assertEquals("ISO-8859-1", response.getCharset()); //$NON-NLS-1$
+		Assert.assertEquals("gzip", response.getHeader("content-encoding")); //$NON-NLS-1$ //$NON-NLS-2$
+		Element document = response.parse();
+		Assert.assertEquals("caf\u00e9", document.select("p").text()); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals("test-agent", document.select("a").text()); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/** Tests that URL sources retry error statuses and fail afterwards. */
+	@Test
+	public void testUrlSourceRetriesErrorStatus()
+	{
+		ConnectionOptions options = new ConnectionOptions();
+		options.retries = 2;
+		try
+		{
+			ScraperSource.fromUrl(url("/fail"), options).getElement(); //$NON-NLS-1$
+			Assert.fail();
+		}
+		catch (ScraperException e)
+		{
+			Assert.assertEquals(3, this.failedRequests.get());
+		}
+	}
+
+	/** Tests that URL sources use the fetcher of the options. */
+	@Test
+	public void testUrlSourceUsesFetcher() throws ScraperException
+	{
+		final AtomicInteger fetches = new AtomicInteger();
+		ConnectionOptions options = new ConnectionOptions();
+		options.fetcher = new Fetcher()
+		{
+			@Override
+			public FetchResponse fetch(
+					String url,
+					Map<String, String> headers,
+					ConnectionOptions options) throws IOException
+			{
+				fetches.incrementAndGet();
+				return new DefaultFetcher().fetch(url, headers, options);
+			}
+		};
+
+		Element element = ScraperSource.fromUrl(url("/page"), options).getElement(); //$NON-NLS-1$
+		Assert.assertEquals("caf\u00e9", element.select("p").text()); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals(1, fetches.get());
+	}
+
+	/** Tests that redirects are followed to the final URL. */
+	@Test
+	public void testFollowsRedirects() throws IOException
+	{
+		FetchResponse response = new DefaultFetcher().fetch(
+				url("/redirect"), //$NON-NLS-1$
+				Collections.<String, String> emptyMap(),
+				new ConnectionOptions());
+
+		Assert.assertEquals(200, response.getStatusCode());
+		Assert.assertEquals(url("/page"), response.getUrl()); //$NON-NLS-1$
+		Assert.assertEquals("caf\u00e9", response.parse().select("p").text()); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/** Tests that unfollowed redirects fail URL sources. */
+	@Test
+	public void testUnfollowedRedirectFails() throws IOException
+	{
+		ConnectionOptions options = new ConnectionOptions();
+		options.followRedirects = false;
+		FetchResponse response = new DefaultFetcher().fetch(
+				url("/redirect"), //$NON-NLS-1$
+				Collections.<String, String> emptyMap(),
+				options);
+		Assert.assertEquals(302, response.getStatusCode());
+
+		try
+		{
+			ScraperSource.fromUrl(url("/redirect"), options).getElement(); //$NON-NLS-1$
+			Assert.fail();
+		}
+		catch (ScraperException e)
+		{
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that redirects are followed by the fetcher instead of the
+	 * connection, which does not change protocols.
+	 */
+	@Test
+	public void testRedirectChangingProtocol() throws IOException
+	{
+		try
+		{
+			new DefaultFetcher().fetch(
+					url("/ftp"), //$NON-NLS-1$
+					Collections.<String, String> emptyMap(),
+					new ConnectionOptions());
+			Assert.fail();
+		}
+		catch (ProtocolException e)
+		{
+			Assert.assertTrue(e.getMessage().contains("ftp://localhost/page")); //$NON-NLS-1$
+		}
+	}
+
+	/** Tests that redirect loops fail. */
+	@Test(expected = ProtocolException.class)
+	public void testTooManyRedirects() throws IOException
+	{
+		new DefaultFetcher().fetch(
+				url("/loop"), //$NON-NLS-1$
+				Collections.<String, String> emptyMap(),
+				new ConnectionOptions());
+	}
+
+	/** Tests that binary responses fail unless their content type is ignored. */
+	@Test
+	public void testContentType() throws IOException
+	{
+		ConnectionOptions options = new ConnectionOptions();
+		try
+		{
+			new DefaultFetcher().fetch(
+					url("/binary"), //$NON-NLS-1$
+					Collections.<String, String> emptyMap(),
+					options);
+			Assert.fail();
+		}
+		catch (UnsupportedMimeTypeException e)
+		{
+			Assert.assertEquals("application/octet-stream", e.getMimeType()); //$NON-NLS-1$
+		}
+
+		options.ignoreContentType = true;
+		FetchResponse response = new DefaultFetcher().fetch(
+				url("/binary"), //$NON-NLS-1$
+				Collections.<String, String> emptyMap(),
+				options);
+		Assert.assertEquals(4, response.getBody().length);
+	}
+
+	/** Tests that bodies are truncated to the maximum size. */
+	@Test
+	public void testMaxBodySize() throws IOException
+	{
+		ConnectionOptions options = new ConnectionOptions();
+		options.maxBodySize = 1000;
+		Assert.assertEquals(1000, new DefaultFetcher().fetch(
+				url("/large"), //$NON-NLS-1$
+				Collections.<String, String> emptyMap(),
+				options).getBody().length);
+
+		options.maxBodySize = 0;
+		Assert.assertEquals(100000, new DefaultFetcher().fetch(
+				url("/large"), //$NON-NLS-1$
+				Collections.<String, String> emptyMap(),
+				options).getBody().length);
+	}
+
+	/** @return The URL of the path on the local server. */
+	private String url(String path)
+	{
+		return "http://localhost:" + this.server.getAddress().getPort() + path; //$NON-NLS-1$
+	}
+
+	/** Sends the response and closes the exchange. */
+	private static void respond(HttpExchange exchange, int status, byte[] body)
+			throws IOException
+	{
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	/** Handler redirecting to a fixed location. */
+	private static class RedirectHandler implements HttpHandler
+	{
+		/** The location of the redirect. */
+		private final String location;
+
+		/** Constructor. */
+		public RedirectHandler(String location)
+		{
+			this.location = location;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void handle(HttpExchange exchange) throws IOException
+		{
+			exchange.getResponseHeaders().add("Location", this.location); //$NON-NLS-1$
+			respond(exchange, 302, new byte[0]);
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package com.mpdeimos.webscraper.fetching;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.nodes.Document;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.ScraperSource;
+import com.mpdeimos.webscraper.ScraperSource.ConnectionOptions;
+
+/**
+ * Tests {@link DocumentCache}.
+ *
+ * @author mpdeimos
+ */
+public class DocumentCacheTest
+{
+	/** The amount of downloads. */
+	private final AtomicInteger downloads = new AtomicInteger();
+
+	/** Tests that concurrent requests of a URL share one download. */
+	@Test
+	public void testSingleFlight() throws Exception
+	{
+		final DocumentCache cache = new DocumentCache(1 << 20);
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<Document>> documents = new ArrayList<Future<Document>>();
+			for (int i = 0; i < 4; i++)
+			{
+				documents.add(pool.submit(new Callable<Document>()
+				{
+					@Override
+					public Document call() throws Exception
+					{
+						return cache.get("a", new BlockingDownload("a", release)); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+				}));
+			}
+			Thread.sleep(50);
+			release.countDown();
+
+			for (Future<Document> document : documents)
+			{
+				Assert.assertSame(documents.get(0).get(), document.get());
+			}
+			Assert.assertEquals(1, this.downloads.get());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	/** Tests that least recently used documents exceeding the size are evicted. */
+	@Test
+	public void testEviction() throws ScraperException
+	{
+		DocumentCache cache = new DocumentCache(20);
+		cache.get("a", download("a")); //$NON-NLS-1$ //$NON-NLS-2$
+		cache.get("b", download("b")); //$NON-NLS-1$ //$NON-NLS-2$
+		cache.get("a", download("a")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals(2, this.downloads.get());
+
+		cache.get("c", download("c")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals(2, cache.size());
+		cache.get("a", download("a")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals(3, this.downloads.get());
+		cache.get("b", download("b")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals(4, this.downloads.get());
+	}
+
+	/** Tests that failures are reported, but not cached. */
+	@Test
+	public void testFailureIsNotCached() throws ScraperException
+	{
+		DocumentCache cache = new DocumentCache(1 << 20);
+		try
+		{
+			cache.get("a", new DocumentCache.Download() //$NON-NLS-1$
+			{
+				@Override
+				public FetchResponse fetch() throws ScraperException
+				{
+					throw new ScraperException("Could not connect"); //$NON-NLS-1$
+				}
+			});
+			Assert.fail();
+		}
+		catch (ScraperException e)
+		{
+			// expected
+		}
+
+		Assert.assertEquals(0, cache.size());
+		Assert.assertNotNull(cache.get("a", download("a"))); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/** Tests that URL sources with the same URL share the cached document. */
+	@Test
+	public void testUrlSourcesShareDocument() throws ScraperException
+	{
+		ConnectionOptions options = new ConnectionOptions();
+		options.documentCache = new DocumentCache(1 << 20);
+		options.fetcher = new Fetcher()
+		{
+			@Override
+			public FetchResponse fetch(
+					String url,
+					Map<String, String> headers,
+					ConnectionOptions options) throws IOException
+			{
+				return response(url);
+			}
+		};
+
+		Assert.assertSame(
+				ScraperSource.fromUrl("http://example.com/", options).getElement(), //$NON-NLS-1$
+				ScraperSource.fromUrl("http://example.com/", options).getElement()); //$NON-NLS-1$
+		Assert.assertEquals(1, this.downloads.get());
+	}
+
+	/** @return A download of a document with the URL as body. */
+	private DocumentCache.Download download(final String url)
+	{
+		return new DocumentCache.Download()
+		{
+			@Override
+			public FetchResponse fetch()
+			{
+				return response(url);
+			}
+		};
+	}
+
+	/** @return A counted response with a 10 byte body. */
+	private FetchResponse response(String url)
+	{
+		this.downloads.incrementAndGet();
+		byte[] body = String.format("<p>%-3s</p>", url).getBytes(); //$NON-NLS-1$
+		return new FetchResponse(
+				url,
+				200,
+				Collections.<String, List<String>> emptyMap(),
+				body);
+	}
+
+	/** Download waiting for a latch. */
+	private class BlockingDownload implements DocumentCache.Download
+	{
+		/** The URL of the download. */
+		private final String url;
+
+		/** The latch releasing the download. */
+		private final CountDownLatch release;
+
+		/** Constructor. */
+		private BlockingDownload(String url, CountDownLatch release)
+		{
+			this.url = url;
+			this.release = release;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public FetchResponse fetch() throws ScraperException
+		{
+			try
+			{
+				this.release.await();
+			}
+			catch (InterruptedException e)
+			{
+				throw new ScraperException("Interrupted", e); //$NON-NLS-1$
+			}
+			return response(this.url);
+		}
+	}
+}
@@ -0,0 +1,301 @@
+package com.mpdeimos.webscraper.fetching;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mpdeimos.webscraper.ScraperSource.ConnectionOptions;
+
+/**
+ * Tests {@link RetryPolicy}.
+ *
+ * @author mpdeimos
+ */
+public class RetryPolicyTest
+{
+	/** The URL fetched by the tests. */
+	private static final String URL = "http://example.com/page"; //$NON-NLS-1$
+
+	/** Tests that retryable failures are retried till an attempt succeeds. */
+	@Test
+	public void testRetriesTillSuccess() throws IOException
+	{
+		ScriptedFetcher fetcher = new ScriptedFetcher(503, -1, 200);
+		FetchResponse response = newPolicy().fetch(
+				fetcher,
+				URL,
+				Collections.<String, String> emptyMap(),
+				new ConnectionOptions());
+
+		Assert.assertEquals(200, response.getStatusCode());
+		Assert.assertEquals(3, fetcher.attempts);
+	}
+
+	/** Tests that non-retryable statuses fail immediately. */
+	@Test
+	public void testNonRetryableStatus()
+	{
+		ScriptedFetcher fetcher = new ScriptedFetcher(404, 200);
+		try
+		{
+			newPolicy().fetch(
+					fetcher,
+					URL,
+					Collections.<String, String> emptyMap(),
+					new ConnectionOptions());
+			Assert.fail();
+		}
+		catch (IOException e)
+		{
+			Assert.assertEquals(1, fetcher.attempts);
+		}
+	}
+
+	/** Tests that the circuit of a failing host opens and fails fast. */
+	@Test
+	public void testCircuitBreaker() throws IOException
+	{
+		RetryPolicy policy = newPolicy();
+		policy.failureThreshold = 2;
+		ConnectionOptions options = new ConnectionOptions();
+		options.retries = 0;
+		ScriptedFetcher fetcher = new ScriptedFetcher(500, 500, 200);
+
+		for (int i = 0; i < 3; i++)
+		{
+			try
+			{
+				policy.fetch(
+						fetcher,
+						URL,
+						Collections.<String, String> emptyMap(),
+						options);
+				Assert.fail();
+			}
+			catch (IOException e)
+			{
+				// expected
+			}
+		}
+		Assert.assertEquals(2, fetcher.attempts);
+
+		FetchResponse response = policy.fetch(
+				fetcher,
+				"http://other.com/", //$NON-NLS-1$
+				Collections.<String, String> emptyMap(),
+				options);
+		Assert.assertEquals(200, response.getStatusCode());
+	}
+
+	/** Tests that half-open circuits close after a successful trial. */
+	@Test
+	public void testCircuitRecovers() throws IOException
+	{
+		RetryPolicy policy = newPolicy();
+		policy.failureThreshold = 1;
+		policy.openMillis = 0;
+		ConnectionOptions options = new ConnectionOptions();
+		options.retries = 0;
+		ScriptedFetcher fetcher = new ScriptedFetcher(500, 200, 200);
+
+		try
+		{
+			policy.fetch(
+					fetcher,
+					URL,
+					Collections.<String, String> emptyMap(),
+					options);
+			Assert.fail();
+		}
+		catch (IOException e)
+		{
+			// expected
+		}
+		for (int i = 0; i < 2; i++)
+		{
+			Assert.assertEquals(200, policy.fetch(
+					fetcher,
+					URL,
+					Collections.<String, String> emptyMap(),
+					options).getStatusCode());
+		}
+	}
+
+	/** Tests that circuits are not broken by default. */
+	@Test
+	public void testCircuitBreakerDisabledByDefault()
+	{
+		RetryPolicy policy = newPolicy();
+		ConnectionOptions options = new ConnectionOptions();
+		options.retries = 0;
+		ScriptedFetcher fetcher = new ScriptedFetcher(
+				500, 500, 500, 500, 500, 500, 500, 500);
+
+		for (int i = 0; i < 8; i++)
+		{
+			try
+			{
+				policy.fetch(
+						fetcher,
+						URL,
+						Collections.<String, String> emptyMap(),
+						options);
+				Assert.fail();
+			}
+			catch (IOException e)
+			{
+				Assert.assertTrue(e.getMessage().contains("Status 500")); //$NON-NLS-1$
+			}
+		}
+		Assert.assertEquals(8, fetcher.attempts);
+		Assert.assertEquals(0, policy.getCircuitCount());
+	}
+
+	/**
+	 * Tests that a trial request failing with an error does not leave the
+	 * circuit half-open.
+	 */
+	@Test
+	public void testTrialEndsOnError() throws IOException
+	{
+		RetryPolicy policy = newPolicy();
+		policy.failureThreshold = 1;
+		policy.openMillis = 0;
+		ConnectionOptions options = new ConnectionOptions();
+		options.retries = 0;
+		ScriptedFetcher fetcher = new ScriptedFetcher(500, -2, 200);
+
+		try
+		{
+			policy.fetch(
+					fetcher,
+					URL,
+					Collections.<String, String> emptyMap(),
+					options);
+			Assert.fail();
+		}
+		catch (IOException e)
+		{
+			// expected
+		}
+		try
+		{
+			policy.fetch(
+					fetcher,
+					URL,
+					Collections.<String, String> emptyMap(),
+					options);
+			Assert.fail();
+		}
+		catch (AssertionError e)
+		{
+			// expected
+		}
+		Assert.assertEquals(200, policy.fetch(
+				fetcher,
+				URL,
+				Collections.<String, String> emptyMap(),
+				options).getStatusCode());
+	}
+
+	/** Tests that circuits of hosts without recent failures are evicted. */
+	@Test
+	public void testEvictsIdleCircuits()
+	{
+		RetryPolicy policy = newPolicy();
+		policy.failureThreshold = 5;
+		policy.openMillis = 0;
+		ConnectionOptions options = new ConnectionOptions();
+		options.retries = 0;
+		ScriptedFetcher fetcher = new ScriptedFetcher(500, 500);
+
+		for (String url : new String[] { URL, "http://other.com/" }) //$NON-NLS-1$
+		{
+			try
+			{
+				policy.fetch(
+						fetcher,
+						url,
+						Collections.<String, String> emptyMap(),
+						options);
+				Assert.fail();
+			}
+			catch (IOException e)
+			{
+				// expected
+			}
+		}
+		Assert.assertEquals(1, policy.getCircuitCount());
+	}
+
+	/** Tests parsing of Retry-After headers. */
+	@Test
+	public void testParseRetryAfter()
+	{
+		Assert.assertEquals(120000, RetryPolicy.parseRetryAfter("120", 0)); //$NON-NLS-1$
+		Assert.assertEquals(0, RetryPolicy.parseRetryAfter(null, 0));
+		Assert.assertEquals(0, RetryPolicy.parseRetryAfter("soon", 0)); //$NON-NLS-1$
+		Assert.assertEquals(5000, RetryPolicy.parseRetryAfter(
+				"Thu, 01 Jan 1970 00:00:10 GMT", //$NON-NLS-1$
+				5000));
+	}
+
+	/** @return A policy with short delays. */
+	private static RetryPolicy newPolicy()
+	{
+		RetryPolicy policy = new RetryPolicy();
+		policy.initialBackoffMillis = 1;
+		return policy;
+	}
+
+	/**
+	 * Fetcher responding with a scripted sequence of statuses, where
+	 * <code>-1</code> denotes an I/O error and <code>-2</code> an
+	 * {@link AssertionError}.
+	 */
+	private static class ScriptedFetcher implements Fetcher
+	{
+		/** The remaining statuses. */
+		private final Deque<Integer> statuses = new ArrayDeque<Integer>();
+
+		/** The amount of fetch attempts. */
+		private int attempts = 0;
+
+		/** Constructor. */
+		private ScriptedFetcher(Integer... statuses)
+		{
+			this.statuses.addAll(Arrays.asList(statuses));
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public FetchResponse fetch(
+				String url,
+				Map<String, String> headers,
+				ConnectionOptions options) throws IOException
+		{
+			this.attempts++;
+			int status = this.statuses.poll();
+			if (status == -1)
+			{
+				throw new IOException("Connection reset"); //$NON-NLS-1$
+			}
+			if (status == -2)
+			{
+				throw new AssertionError("Unexpected failure"); //$NON-NLS-1$
+			}
+			return new FetchResponse(
+					url,
+					status,
+					Collections.<String, List<String>> emptyMap(),
+					new byte[0]);
+		}
+	}
+}
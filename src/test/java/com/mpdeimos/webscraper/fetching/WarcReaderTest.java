@@ -0,0 +1,168 @@
+package com.mpdeimos.webscraper.fetching;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.ScraperSource;
+import com.mpdeimos.webscraper.ScraperSource.ConnectionOptions;
+
+/**
+ * Tests {@link WarcReader} and {@link WarcWriter}.
+ *
+ * @author mpdeimos
+ */
+public class WarcReaderTest
+{
+	/** The folder of the archives. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Tests that recorded responses are read again. */
+	@Test
+	public void testRoundTrip() throws IOException, ScraperException
+	{
+		for (boolean compress : new boolean[] { false, true })
+		{
+			Path file = this.folder.newFile().toPath();
+			WarcWriter writer = new WarcWriter(new Fetcher()
+			{
+				@Override
+				public FetchResponse fetch(
+						String url,
+						Map<String, String> headers,
+						ConnectionOptions options) throws IOException
+				{
+					Map<String, List<String>> responseHeaders = new HashMap<String, List<String>>();
+					responseHeaders.put("Content-Type", //$NON-NLS-1$
+							Arrays.asList("text/html; charset=UTF-8")); //$NON-NLS-1$
+					responseHeaders.put("Content-Encoding", Arrays.asList("gzip")); //$NON-NLS-1$ //$NON-NLS-2$
+					return new FetchResponse(
+							url,
+							200,
+							responseHeaders,
+							("<p>\u00fcber " + url + "</p>").getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				}
+			}, file, compress);
+
+			ConnectionOptions options = new ConnectionOptions();
+			options.fetcher = writer;
+			for (int i = 0; i < 100; i++)
+			{
+				ScraperSource.fromUrl("http://example.com/" + i, options).getElement(); //$NON-NLS-1$
+			}
+			writer.close();
+
+			WarcReader reader = new WarcReader(file);
+			try
+			{
+				for (int i = 0; i < 100; i++)
+				{
+					Assert.assertTrue(reader.hasNext());
+					WarcReader.Record record = reader.next();
+					Assert.assertEquals("http://example.com/" + i, record.getUrl()); //$NON-NLS-1$
+					Assert.assertEquals(200, record.getResponse().getStatusCode());
+					Assert.assertNull(record.getResponse().getHeader(
+							"Content-Encoding")); //$NON-NLS-1$
+					Assert.assertEquals("\u00fcber http://example.com/" + i, //$NON-NLS-1$
+							record.getElement().select("p").text()); //$NON-NLS-1$
+					Assert.assertEquals(record.getUrl(),
+							record.getElement().baseUri());
+				}
+				Assert.assertFalse(reader.hasNext());
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Tests that other records are skipped and that chunked, gzip-encoded
+	 * responses in per-record gzip members are decoded.
+	 */
+	@Test
+	public void testForeignArchive() throws IOException, ScraperException
+	{
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(encoded);
+		gzip.write("<p>chunked</p>".getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+		gzip.close();
+
+		ByteArrayOutputStream block = new ByteArrayOutputStream();
+		block.write(("HTTP/1.1 200 OK\r\n" //$NON-NLS-1$
+				+ "Content-Type: text/html\r\n" //$NON-NLS-1$
+				+ "Content-Encoding: gzip\r\n" //$NON-NLS-1$
+				+ "Transfer-Encoding: chunked\r\n\r\n" //$NON-NLS-1$
+				+ "5\r\n").getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+		block.write(encoded.toByteArray(), 0, 5);
+		block.write(("\r\n" + Integer.toHexString(encoded.size() - 5) + "\r\n").getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		block.write(encoded.toByteArray(), 5, encoded.size() - 5);
+		block.write("\r\n0\r\n\r\n".getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		Path file = this.folder.newFile().toPath();
+		ByteArrayOutputStream archive = new ByteArrayOutputStream();
+		writeMember(archive, record("warcinfo", null, "software: test\r\n".getBytes("UTF-8"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		writeMember(archive, record("request", "http://example.com/", "GET / HTTP/1.1\r\n\r\n".getBytes("UTF-8"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		writeMember(archive, record("response", "<http://example.com/>", block.toByteArray())); //$NON-NLS-1$ //$NON-NLS-2$
+		Files.write(file, archive.toByteArray());
+
+		WarcReader reader = new WarcReader(file);
+		try
+		{
+			List<WarcReader.Record> records = reader.stream().collect(
+					Collectors.<WarcReader.Record> toList());
+			Assert.assertEquals(1, records.size());
+			Assert.assertEquals("http://example.com/", records.get(0).getUrl()); //$NON-NLS-1$
+			Assert.assertEquals("chunked", //$NON-NLS-1$
+					records.get(0).getElement().select("p").text()); //$NON-NLS-1$
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/** @return A WARC record with the given type, URI and block. */
+	private static byte[] record(String type, String uri, byte[] block)
+			throws IOException
+	{
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		StringBuilder header = new StringBuilder("WARC/1.0\r\n"); //$NON-NLS-1$
+		header.append("WARC-Type: ").append(type).append("\r\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		if (uri != null)
+		{
+			header.append("WARC-Target-URI: ").append(uri).append("\r\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		header.append("Content-Length: ").append(block.length).append("\r\n\r\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		record.write(header.toString().getBytes("UTF-8")); //$NON-NLS-1$
+		record.write(block);
+		record.write("\r\n\r\n".getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+		return record.toByteArray();
+	}
+
+	/** Writes the record as separate gzip member. */
+	private static void writeMember(ByteArrayOutputStream archive, byte[] record)
+			throws IOException
+	{
+		ByteArrayOutputStream member = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(member);
+		gzip.write(record);
+		gzip.close();
+		member.writeTo(archive);
+	}
+}
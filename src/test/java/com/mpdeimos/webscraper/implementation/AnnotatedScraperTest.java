@@ -0,0 +1,237 @@
+package com.mpdeimos.webscraper.implementation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jsoup.nodes.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mpdeimos.webscraper.Scrape;
+import com.mpdeimos.webscraper.Scraper;
+import com.mpdeimos.webscraper.ScraperContext;
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.ScraperSource;
+import com.mpdeimos.webscraper.conversion.Converter;
+import com.mpdeimos.webscraper.conversion.NumberFormatConverter;
+import com.mpdeimos.webscraper.implementation.ScrapePlan.FieldPlan;
+import com.mpdeimos.webscraper.selection.Selector;
+
+/**
+ * Tests {@link AnnotatedScraper}.
+ * 
+ * @author mpdeimos
+ */
+public class AnnotatedScraperTest
+{
+	/** The scraped test document. */
+	private static final String HTML = "<table>" //$NON-NLS-1$
+			+ "<tr><td class='i'>1</td><td class='l'>10000000000</td><td class='d'>1.5</td></tr>" //$NON-NLS-1$
+			+ "<tr><td class='i'> 2 </td><td class='l'>-3</td><td class='d'>2</td></tr>" //$NON-NLS-1$
+			+ "<tr><td class='i'></td><td class='l'>x7</td><td class='d'>-0.25</td></tr>" //$NON-NLS-1$
+			+ "</table>"; //$NON-NLS-1$
+
+	/** Tests scraping to primitive arrays. */
+	@Test
+	public void testPrimitiveArrays() throws ScraperException
+	{
+		PrimitiveArrayItem item = new PrimitiveArrayItem();
+		new AnnotatedScraper(ScraperSource.fromHtml(HTML), item).scrape();
+
+		Assert.assertArrayEquals(new int[] { 1, 2 }, item.ints);
+		Assert.assertArrayEquals(new long[] { 10000000000L, -3, 7 },
+				item.longs);
+		Assert.assertArrayEquals(new double[] { 1.5, 2, -0.25 },
+				item.doubles, 0);
+		Assert.assertArrayEquals(new Integer[] { 1, 2 }, item.boxed);
+	}
+
+	/** Tests that parallel conversion keeps the order of the elements. */
+	@Test
+	public void testParallelConversion() throws ScraperException
+	{
+		StringBuilder html = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+		{
+			html.append("<p>").append(i).append("</p><b></b>"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		ParallelItem item = new ParallelItem();
+		new AnnotatedScraper(ScraperSource.fromHtml(html.toString()), item).scrape();
+
+		Assert.assertEquals(1000, item.values.length);
+		Assert.assertEquals(1000, item.nonEmpty.length);
+		for (int i = 0; i < 1000; i++)
+		{
+			Assert.assertEquals(Integer.valueOf(i), item.values[i]);
+			Assert.assertEquals(String.valueOf(i), item.nonEmpty[i]);
+		}
+	}
+
+	/** Tests that failures of parallel conversions are rethrown. */
+	@Test(expected = NumberFormatException.class)
+	public void testParallelConversionFailure() throws ScraperException
+	{
+		new AnnotatedScraper(ScraperSource.fromHtml(HTML),
+				new ParallelFailingItem()).scrape();
+	}
+
+	/** Tests that converted numbers are widened to primitive fields. */
+	@Test
+	public void testWideningAssignment() throws ScraperException
+	{
+		WideningItem item = new WideningItem();
+		Scraper.builder().add(ScraperSource.fromHtml("<p>5</p>"), item).build().scrape(); //$NON-NLS-1$
+
+		Assert.assertEquals(5.0, item.price, 0);
+	}
+
+	/**
+	 * Tests that fields are assigned in turn, so a failing field leaves the
+	 * preceding fields assigned and the following ones unassigned.
+	 */
+	@Test
+	public void testAssignmentOrderOnFailure()
+	{
+		PartialItem item = new PartialItem();
+		try
+		{
+			new AnnotatedScraper(ScraperSource.fromHtml("<p>a</p>"), item).scrape(); //$NON-NLS-1$
+			Assert.fail();
+		}
+		catch (ScraperException e)
+		{
+			// expected
+		}
+
+		boolean failed = false;
+		for (FieldPlan field : ScrapePlan.forClass(PartialItem.class).getFields())
+		{
+			String name = field.getField().getName();
+			if (name.equals("missing")) //$NON-NLS-1$
+			{
+				failed = true;
+			}
+			else if (name.equals("first")) //$NON-NLS-1$
+			{
+				Assert.assertEquals(failed ? null : "a", item.first); //$NON-NLS-1$
+			}
+			else
+			{
+				Assert.assertEquals(failed ? null : "a", item.second); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * Tests that root selectors see the field type and converters of array
+	 * fields the element type.
+	 */
+	@Test
+	public void testTargetTypes() throws ScraperException
+	{
+		TypeRecordingProcessor.TYPES.clear();
+		new AnnotatedScraper(ScraperSource.fromHtml("<p>a</p>"), //$NON-NLS-1$
+				new TargetTypeItem()).scrape();
+
+		Assert.assertEquals(
+				Arrays.<Class<?>> asList(String[].class, String.class),
+				TypeRecordingProcessor.TYPES);
+	}
+
+	/** Item with an array field recording its target types. */
+	public static class TargetTypeItem
+	{
+		/** Texts. */
+		@Scrape(value = "p", root = TypeRecordingProcessor.class, converter = TypeRecordingProcessor.class)
+		public String[] texts;
+	}
+
+	/** Selector and converter recording the target types they see. */
+	public static class TypeRecordingProcessor implements Selector, Converter
+	{
+		/** The recorded target types. */
+		private static final List<Class<?>> TYPES = new ArrayList<Class<?>>();
+
+		/** {@inheritDoc} */
+		@Override
+		public Element select(ScraperContext context)
+		{
+			TYPES.add(context.getTargetType());
+			return context.getRootElement();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Object convert(ScraperContext context)
+		{
+			TYPES.add(context.getTargetType());
+			return context.getSourceText();
+		}
+	}
+
+	/** Item with a field failing between two other fields. */
+	public static class PartialItem
+	{
+		/** Existing text. */
+		@Scrape("p")
+		public String first;
+
+		/** Missing text. */
+		@Scrape("q")
+		public String missing;
+
+		/** Existing text. */
+		@Scrape("p")
+		public String second;
+	}
+
+	/** Item with a primitive field wider than the converted value. */
+	public static class WideningItem
+	{
+		/** Price parsed to a Long. */
+		@Scrape(value = "p", converter = NumberFormatConverter.class)
+		public double price;
+	}
+
+	/** Item with parallel converted array fields. */
+	public static class ParallelItem
+	{
+		/** Converted integers. */
+		@Scrape(value = "p", parallel = true)
+		public Integer[] values;
+
+		/** Texts skipping empty values. */
+		@Scrape(value = "p, b", empty = false, parallel = true)
+		public String[] nonEmpty;
+	}
+
+	/** Item with a parallel converted array field that cannot be converted. */
+	public static class ParallelFailingItem
+	{
+		/** Longs with a malformed value. */
+		@Scrape(value = "td.l", parallel = true)
+		public Long[] values;
+	}
+
+	/** Item with primitive array fields. */
+	public static class PrimitiveArrayItem
+	{
+		/** Integers skipping empty values. */
+		@Scrape(value = "td.i", empty = false)
+		public int[] ints;
+
+		/** Longs with regex. */
+		@Scrape(value = "td.l", regex = "x?(.*)")
+		public long[] longs;
+
+		/** Doubles. */
+		@Scrape("td.d")
+		public double[] doubles;
+
+		/** Boxed integers. */
+		@Scrape(value = "td.i", empty = false)
+		public Integer[] boxed;
+	}
+}
@@ -0,0 +1,137 @@
+package com.mpdeimos.webscraper.implementation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mpdeimos.webscraper.PolitenessOptions;
+
+/**
+ * Tests {@link HostScheduler}.
+ *
+ * @author mpdeimos
+ */
+public class HostSchedulerTest
+{
+	/** The amount of tasks per host. */
+	private static final int TASKS = 10;
+
+	/**
+	 * Tests that hosts are dispatched round-robin, so a host added later is
+	 * not starved if the overall rate is limited.
+	 */
+	@Test
+	public void testRoundRobin() throws Exception
+	{
+		PolitenessOptions options = new PolitenessOptions();
+		options.maxConnectionsPerHost = TASKS;
+		options.requestsPerSecond = 200;
+		options.burst = 1;
+		HostScheduler scheduler = new HostScheduler(
+				new DirectExecutor(),
+				options);
+
+		List<String> started = Collections.synchronizedList(new ArrayList<String>());
+		CountDownLatch done = new CountDownLatch(2 * TASKS);
+		for (String host : new String[] { "a", "b" }) //$NON-NLS-1$ //$NON-NLS-2$
+		{
+			for (int i = 0; i < TASKS; i++)
+			{
+				scheduler.execute(host, new RecordingTask(host, started, done));
+			}
+		}
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+		int startedOfB = Collections.frequency(
+				started.subList(0, TASKS),
+				"b"); //$NON-NLS-1$
+		Assert.assertTrue(started.toString(), startedOfB >= TASKS / 2 - 1);
+	}
+
+	/**
+	 * Tests that tasks are passed to the executor without holding the lock of
+	 * the scheduler, since the executor may block.
+	 */
+	@Test
+	public void testExecutesWithoutLock()
+	{
+		final AtomicBoolean locked = new AtomicBoolean();
+		final List<HostScheduler> scheduler = new ArrayList<HostScheduler>();
+		Executor executor = new Executor()
+		{
+			@Override
+			public void execute(Runnable command)
+			{
+				if (Thread.holdsLock(scheduler.get(0)))
+				{
+					locked.set(true);
+				}
+				command.run();
+			}
+		};
+		scheduler.add(new HostScheduler(executor, new PolitenessOptions()));
+
+		List<String> started = Collections.synchronizedList(new ArrayList<String>());
+		CountDownLatch done = new CountDownLatch(TASKS);
+		for (int i = 0; i < TASKS; i++)
+		{
+			String host = "host" + i % 2; //$NON-NLS-1$
+			scheduler.get(0).execute(
+					host,
+					new RecordingTask(host, started, done));
+		}
+
+		Assert.assertEquals(TASKS, started.size());
+		Assert.assertFalse(locked.get());
+	}
+
+	/** Executor running tasks on the calling thread. */
+	private static class DirectExecutor implements Executor
+	{
+		/** {@inheritDoc} */
+		@Override
+		public void execute(Runnable command)
+		{
+			command.run();
+		}
+	}
+
+	/** Task recording the host it was started for. */
+	private static class RecordingTask implements Runnable
+	{
+		/** The host of the task. */
+		private final String host;
+
+		/** The hosts of the started tasks in start order. */
+		private final List<String> started;
+
+		/** The latch counted down when the task is done. */
+		private final CountDownLatch done;
+
+		/** Constructor. */
+		private RecordingTask(
+				String host,
+				List<String> started,
+				CountDownLatch done)
+		{
+			this.host = host;
+			this.started = started;
+			this.done = done;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void run()
+		{
+			this.started.add(this.host);
+			this.done.countDown();
+		}
+	}
+}
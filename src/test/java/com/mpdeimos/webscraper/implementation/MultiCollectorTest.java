@@ -0,0 +1,43 @@
+package com.mpdeimos.webscraper.implementation;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.select.Collector;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link MultiCollector}.
+ * 
+ * @author mpdeimos
+ */
+public class MultiCollectorTest
+{
+	/**
+	 * Tests that collecting multiple queries in one pass equals collecting
+	 * each query separately.
+	 */
+	@Test
+	public void testEqualsSeparateCollection()
+	{
+		Document document = Jsoup.parse("<div id='a'><p>1</p><p class='x'>2<b>3</b></p></div>" //$NON-NLS-1$
+				+ "<div><p class='x'>4</p><span>5</span></div>"); //$NON-NLS-1$
+		String[] queries = { "p", ".x", "div > *", "b, span", ":root", "i" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+
+		Evaluator[] evaluators = new Evaluator[queries.length];
+		for (int i = 0; i < queries.length; i++)
+		{
+			evaluators[i] = QueryParser.parse(queries[i]);
+		}
+
+		Elements[] results = MultiCollector.collect(evaluators, document);
+		for (int i = 0; i < queries.length; i++)
+		{
+			Assert.assertEquals(queries[i],
+					Collector.collect(evaluators[i], document), results[i]);
+		}
+	}
+}
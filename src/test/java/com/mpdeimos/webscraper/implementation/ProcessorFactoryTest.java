@@ -0,0 +1,116 @@
+package com.mpdeimos.webscraper.implementation;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mpdeimos.webscraper.Scrape;
+import com.mpdeimos.webscraper.ScraperContext;
+import com.mpdeimos.webscraper.ScraperException;
+import com.mpdeimos.webscraper.ScraperSource;
+import com.mpdeimos.webscraper.Stateless;
+import com.mpdeimos.webscraper.conversion.Converter;
+
+/**
+ * Tests {@link ProcessorFactory}.
+ *
+ * @author mpdeimos
+ */
+public class ProcessorFactoryTest
+{
+	/** The scraped test document. */
+	private static final String HTML = "<p>1</p><p>2</p><p>3</p>"; //$NON-NLS-1$
+
+	/** Tests that stateless processors are shared by all factories. */
+	@Test
+	public void testStatelessIsShared() throws ScraperException
+	{
+		ProcessorFactory<Converter> factory = new ProcessorFactory<Converter>(
+				StatelessConverter.class,
+				"convertor"); //$NON-NLS-1$
+		Assert.assertTrue(factory.isStateless());
+		Assert.assertSame(factory.getInstance(), factory.getInstance());
+		Assert.assertSame(factory.getInstance(), new ProcessorFactory<Converter>(
+				StatelessConverter.class,
+				"convertor").getInstance()); //$NON-NLS-1$
+	}
+
+	/** Tests that other processors are instantiated for each request. */
+	@Test
+	public void testStatefulIsFresh() throws ScraperException
+	{
+		ProcessorFactory<Converter> factory = new ProcessorFactory<Converter>(
+				StatefulConverter.class,
+				"convertor"); //$NON-NLS-1$
+		Assert.assertFalse(factory.isStateless());
+		Assert.assertNotSame(factory.getInstance(), factory.getInstance());
+	}
+
+	/**
+	 * Tests that scraping shares stateless converters across fields and
+	 * scrapes, but uses a new stateful converter for each value.
+	 */
+	@Test
+	public void testScrapeInstances() throws ScraperException
+	{
+		StatelessConverter.INSTANCES.clear();
+		StatefulConverter.INSTANCES.clear();
+		for (int i = 0; i < 2; i++)
+		{
+			new AnnotatedScraper(ScraperSource.fromHtml(HTML), new Item()).scrape();
+		}
+
+		Assert.assertEquals(1, StatelessConverter.INSTANCES.size());
+		Assert.assertEquals(6, StatefulConverter.INSTANCES.size());
+	}
+
+	/** Item with stateless and stateful converted fields. */
+	public static class Item
+	{
+		/** First stateless converted field. */
+		@Scrape(value = "p", converter = StatelessConverter.class)
+		public String[] first;
+
+		/** Second stateless converted field. */
+		@Scrape(value = "p", converter = StatelessConverter.class)
+		public String[] second;
+
+		/** Stateful converted field. */
+		@Scrape(value = "p", converter = StatefulConverter.class)
+		public String[] stateful;
+	}
+
+	/** Stateless converter recording its instances. */
+	@Stateless
+	public static class StatelessConverter implements Converter
+	{
+		/** The instances that converted values. */
+		private static final Set<Object> INSTANCES = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+
+		/** {@inheritDoc} */
+		@Override
+		public Object convert(ScraperContext context)
+		{
+			INSTANCES.add(this);
+			return context.getSourceElement().text();
+		}
+	}
+
+	/** Stateful converter recording its instances. */
+	public static class StatefulConverter implements Converter
+	{
+		/** The instances that converted values. */
+		private static final Set<Object> INSTANCES = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+
+		/** {@inheritDoc} */
+		@Override
+		public Object convert(ScraperContext context)
+		{
+			INSTANCES.add(this);
+			return context.getSourceElement().text();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.mpdeimos.webscraper.implementation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mpdeimos.webscraper.Scrape;
+import com.mpdeimos.webscraper.ScraperError;
+import com.mpdeimos.webscraper.conversion.DateFormatConverter;
+import com.mpdeimos.webscraper.implementation.ScrapePlan.FieldPlan;
+
+/**
+ * Tests {@link ScrapePlan}.
+ *
+ * @author mpdeimos
+ */
+public class ScrapePlanTest
+{
+	/** Tests that plans are compiled once per class. */
+	@Test
+	public void testPlanIsCached()
+	{
+		Assert.assertSame(ScrapePlan.forClass(Item.class),
+				ScrapePlan.forClass(Item.class));
+	}
+
+	/** Tests that only accessible annotated fields are part of the plan. */
+	@Test
+	public void testFieldResolution()
+	{
+		ScrapePlan plan = ScrapePlan.forClass(Item.class);
+		Assert.assertEquals(2, plan.getFields().size());
+
+		for (FieldPlan field : plan.getFields())
+		{
+			if (field.getField().getName().equals("values")) //$NON-NLS-1$
+			{
+				Assert.assertTrue(field.isArray());
+				Assert.assertEquals(int.class, field.getElementType());
+				Assert.assertNull(field.getOption(DateFormatConverter.Option.class));
+			}
+			else
+			{
+				Assert.assertFalse(field.isArray());
+				Assert.assertEquals(String.class, field.getElementType());
+				Assert.assertEquals("yyyy", field.getOption( //$NON-NLS-1$
+						DateFormatConverter.Option.class).value());
+			}
+		}
+	}
+
+	/** Tests that malformed CSS queries fail when compiling the plan. */
+	@Test(expected = ScraperError.class)
+	public void testMalformedQuery()
+	{
+		ScrapePlan.forClass(MalformedItem.class);
+	}
+
+	/** Item with accessible and inaccessible fields. */
+	public static class Item
+	{
+		/** Accessible field. */
+		@Scrape("a")
+		@DateFormatConverter.Option("yyyy")
+		public String value;
+
+		/** Accessible array field. */
+		@Scrape("b")
+		public int[] values;
+
+		/** Final field. */
+		@Scrape("c")
+		public final String constant = null;
+
+		/** Not annotated field. */
+		public String other;
+	}
+
+	/** Item with a malformed CSS query. */
+	public static class MalformedItem
+	{
+		/** Field with malformed query. */
+		@Scrape("a[")
+		public String value;
+	}
+}
@@ -0,0 +1,113 @@
+package com.mpdeimos.webscraper.implementation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mpdeimos.webscraper.Scraper.ScraperBuilder;
+import com.mpdeimos.webscraper.ScraperEngine;
+import com.mpdeimos.webscraper.implementation.ThreadingTest.ThreadExtractingItem;
+import com.mpdeimos.webscraper.implementation.ThreadingTest.ThreadNameExtractor;
+
+/**
+ * Tests {@link ScraperEngine}.
+ * 
+ * @author mpdeimos
+ */
+public class ScraperEngineTest
+{
+	/** The amount of threads of the engine. */
+	private static final int PARALLELISM = 4;
+
+	/** Tests that subsequent batches reuse the threads of the engine. */
+	@Test
+	public void testThreadsAreReused() throws Exception
+	{
+		ScraperEngine engine = new ScraperEngine(PARALLELISM);
+		try
+		{
+			ThreadNameExtractor.threadNames.clear();
+			for (int batch = 0; batch < 5; batch++)
+			{
+				ThreadExtractingItem[] items = scrapeBatch(engine, 2 * PARALLELISM);
+				for (ThreadExtractingItem item : items)
+				{
+					Assert.assertEquals("text", item.value); //$NON-NLS-1$
+				}
+			}
+			Assert.assertEquals(PARALLELISM,
+					ThreadNameExtractor.threadNames.size());
+		}
+		finally
+		{
+			engine.close();
+		}
+	}
+
+	/** Tests that concurrent batches only wait for their own targets. */
+	@Test
+	public void testConcurrentBatches() throws Exception
+	{
+		final ScraperEngine engine = new ScraperEngine(PARALLELISM);
+		ExecutorService clients = Executors.newFixedThreadPool(PARALLELISM);
+		try
+		{
+			List<Future<ThreadExtractingItem[]>> batches = new ArrayList<Future<ThreadExtractingItem[]>>();
+			for (int i = 0; i < 16; i++)
+			{
+				batches.add(clients.submit(new Callable<ThreadExtractingItem[]>()
+				{
+					@Override
+					public ThreadExtractingItem[] call() throws Exception
+					{
+						return scrapeBatch(engine, 32);
+					}
+				}));
+			}
+
+			for (Future<ThreadExtractingItem[]> batch : batches)
+			{
+				for (ThreadExtractingItem item : batch.get())
+				{
+					Assert.assertEquals("text", item.value); //$NON-NLS-1$
+				}
+			}
+		}
+		finally
+		{
+			clients.shutdown();
+			engine.close();
+		}
+	}
+
+	/** Tests that closed engines cannot be used anymore. */
+	@Test(expected = IllegalStateException.class)
+	public void testClosedEngine()
+	{
+		ScraperEngine engine = new ScraperEngine(PARALLELISM);
+		engine.close();
+		engine.builder();
+	}
+
+	/** Scrapes a batch of items with the engine. */
+	private static ThreadExtractingItem[] scrapeBatch(
+			ScraperEngine engine,
+			int size) throws Exception
+	{
+		ThreadExtractingItem[] items = new ThreadExtractingItem[size];
+		ScraperBuilder builder = engine.builder();
+		for (int i = 0; i < size; i++)
+		{
+			items[i] = new ThreadExtractingItem();
+			builder.add(items[i]);
+		}
+		builder.build().scrape();
+		return items;
+	}
+}
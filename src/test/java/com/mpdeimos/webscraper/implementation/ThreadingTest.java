@@ -1,5 +1,7 @@
 package com.mpdeimos.webscraper.implementation;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -7,20 +9,28 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jsoup.nodes.Element;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.mpdeimos.webscraper.PolitenessOptions;
 import com.mpdeimos.webscraper.Scrape;
+import com.mpdeimos.webscraper.ScrapeFuture;
+import com.mpdeimos.webscraper.ScrapeSummary;
+import com.mpdeimos.webscraper.ScrapeSummary.TargetFailure;
 import com.mpdeimos.webscraper.Scraper;
 import com.mpdeimos.webscraper.Scraper.ScraperBuilder;
 import com.mpdeimos.webscraper.ScraperContext;
 import com.mpdeimos.webscraper.ScraperException;
 import com.mpdeimos.webscraper.ScraperSource;
 import com.mpdeimos.webscraper.ScraperSource.ScraperSourceProvider;
+import com.mpdeimos.webscraper.StageMetrics;
 import com.mpdeimos.webscraper.conversion.ConstructConverter;
 import com.mpdeimos.webscraper.conversion.ConstructConverter.EArgumentType;
 import com.mpdeimos.webscraper.conversion.Converter;
@@ -195,6 +205,479 @@ public class ThreadingTest
 				PARALLELISM);
 	}
 
+	/**
+	 * Tests that scraping on virtual threads does not exceed the maximum
+	 * concurrency.
+	 */
+	@Test
+	public void testVirtualThreadConcurrencyLimit() throws Exception
+	{
+		ConcurrencyTracker.reset();
+		ScraperBuilder builder = Scraper.builder().setVirtualThreads(
+				PARALLELISM / 8);
+		ConcurrencyTrackingItem[] items = new ConcurrencyTrackingItem[PARALLELISM];
+		for (int i = 0; i < items.length; i++)
+		{
+			items[i] = new ConcurrencyTrackingItem();
+			builder.add(items[i]);
+		}
+		builder.build().scrape();
+
+		for (ConcurrencyTrackingItem item : items)
+		{
+			Assert.assertEquals("text", item.value); //$NON-NLS-1$
+		}
+		Assert.assertTrue(ConcurrencyTracker.maxConcurrency.get() <= PARALLELISM / 8);
+	}
+
+	/**
+	 * Tests that waiting scrapes do not occupy platform threads, neither with
+	 * virtual threads nor with the fixed pool used on runtimes without them.
+	 */
+	@Test
+	public void testVirtualThreadsBoundPlatformThreads() throws Exception
+	{
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		int before = threads.getThreadCount();
+		threads.resetPeakThreadCount();
+
+		ScraperBuilder builder = Scraper.builder().setVirtualThreads(4);
+		for (int i = 0; i < 400; i++)
+		{
+			builder.add(new ConcurrencyTrackingItem());
+		}
+		builder.build().scrape();
+
+		Assert.assertTrue(threads.getPeakThreadCount() - before <= Runtime.getRuntime().availableProcessors() + 8);
+	}
+
+	/**
+	 * Tests that nested scrapes on a work-stealing pool are complete when the
+	 * parent field is converted.
+	 */
+	@Test
+	public void testWorkStealingJoinsNestedScrapes() throws Exception
+	{
+		JoinCheckingConverter.incomplete.set(0);
+		ScraperBuilder builder = Scraper.builder().setParallelism(
+				PARALLELISM / 8).setWorkStealing();
+		JoinCheckingItem[] items = new JoinCheckingItem[PARALLELISM];
+		for (int i = 0; i < items.length; i++)
+		{
+			items[i] = new JoinCheckingItem();
+			builder.add(items[i]);
+		}
+		builder.build().scrape();
+
+		for (JoinCheckingItem item : items)
+		{
+			Assert.assertEquals(3, item.deepScraped.length);
+			Assert.assertEquals("a", item.deepScraped[0].value); //$NON-NLS-1$
+			Assert.assertEquals("c", item.deepScraped[2].value); //$NON-NLS-1$
+		}
+		Assert.assertEquals(0, JoinCheckingConverter.incomplete.get());
+	}
+
+	/**
+	 * Tests that target futures of asynchronous scrapes complete with the
+	 * target after its nested scrapes are finished.
+	 */
+	@Test
+	public void testScrapeAsync() throws Exception
+	{
+		for (ScraperBuilder builder : Arrays.asList(
+				Scraper.builder().setParallelism(PARALLELISM / 8),
+				Scraper.builder().setStages(2, 2, 4)))
+		{
+			ConstructingThreadExtractingItem[] items = new ConstructingThreadExtractingItem[PARALLELISM];
+			for (int i = 0; i < items.length; i++)
+			{
+				items[i] = new ConstructingThreadExtractingItem();
+				builder.add(items[i]);
+			}
+			ScrapeFuture future = builder.build().scrapeAsync();
+
+			Assert.assertEquals(items.length, future.getTargets().size());
+			for (int i = 0; i < items.length; i++)
+			{
+				Object target = future.getTargets().get(i).get();
+				Assert.assertSame(items[i], target);
+				Assert.assertEquals("text", items[i].value); //$NON-NLS-1$
+				Assert.assertEquals("text", items[i].constructed.value); //$NON-NLS-1$
+			}
+			future.get();
+		}
+	}
+
+	/** Tests that failures of asynchronous scrapes complete the futures. */
+	@Test
+	public void testScrapeAsyncFailure() throws Exception
+	{
+		ConcurrencyTrackingItem item = new ConcurrencyTrackingItem();
+		ScrapeFuture future = Scraper.builder().add(item).add(
+				ScraperSource.fromHtml("<a>1</a><a>2</a>"), //$NON-NLS-1$
+				new AmbiguousItem()).build().scrapeAsync();
+
+		future.getTargets().get(0).get();
+		Assert.assertEquals("text", item.value); //$NON-NLS-1$
+		try
+		{
+			future.get();
+			Assert.fail();
+		}
+		catch (ExecutionException e)
+		{
+			Assert.assertTrue(future.getTargets().get(1).isCompletedExceptionally());
+		}
+	}
+
+	/**
+	 * Tests that batch scrapes continue after failing targets and report
+	 * them.
+	 */
+	@Test
+	public void testScrapeBatch() throws Exception
+	{
+		for (ScraperBuilder builder : Arrays.asList(
+				Scraper.builder().setParallelism(PARALLELISM),
+				Scraper.builder().setStages(2, 2, 4)))
+		{
+			ScraperSource failingSource = ScraperSource.fromHtml("<a>1</a><a>2</a>"); //$NON-NLS-1$
+			AmbiguousItem failingItem = new AmbiguousItem();
+			builder.add(failingSource, failingItem);
+			SimpleThreadExtractingItem[] items = new SimpleThreadExtractingItem[2 * PARALLELISM];
+			for (int i = 0; i < items.length; i++)
+			{
+				items[i] = new SimpleThreadExtractingItem();
+				builder.add(dummySource(), items[i]);
+			}
+
+			ScrapeSummary summary = builder.build().scrapeBatch();
+
+			Assert.assertFalse(summary.isSuccessful());
+			Assert.assertEquals(items.length, summary.getSucceededCount());
+			Assert.assertEquals(items.length + 1, summary.getTotalCount());
+			Assert.assertEquals(1, summary.getFailures().size());
+			TargetFailure failure = summary.getFailures().get(0);
+			Assert.assertSame(failingSource, failure.getSource());
+			Assert.assertSame(failingItem, failure.getTarget());
+			Assert.assertTrue(failure.getCause() instanceof ScraperException);
+			for (SimpleThreadExtractingItem item : items)
+			{
+				Assert.assertEquals("text", item.value); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * Tests that the first failure of a batch cancels the outstanding
+	 * scrapes.
+	 */
+	@Test
+	public void testFailFast() throws Exception
+	{
+		SlowConverter.started.set(0);
+		ScraperBuilder builder = Scraper.builder().setParallelism(2);
+		builder.add(ScraperSource.fromHtml("<a>1</a><a>2</a>"), //$NON-NLS-1$
+				new AmbiguousItem());
+		for (int i = 0; i < PARALLELISM; i++)
+		{
+			builder.add(dummySource(), new SlowItem());
+		}
+
+		try
+		{
+			builder.build().scrape();
+			Assert.fail();
+		}
+		catch (ScraperException e)
+		{
+			Assert.assertTrue(e.getMessage().contains("more than one")); //$NON-NLS-1$
+		}
+		Assert.assertTrue(SlowConverter.started.get() < PARALLELISM);
+	}
+
+	/**
+	 * Tests that staged scrapers fetch and bind on separate stages with a
+	 * bounded queue.
+	 */
+	@Test
+	public void testStagedPipeline() throws Exception
+	{
+		ThreadNameExtractor.threadNames.clear();
+		FetchRecordingSource.threadNames.clear();
+		ScraperBuilder builder = Scraper.builder().setStages(8, 2, 4);
+		SimpleThreadExtractingItem[] items = new SimpleThreadExtractingItem[PARALLELISM];
+		for (int i = 0; i < items.length; i++)
+		{
+			items[i] = new SimpleThreadExtractingItem();
+			builder.add(new FetchRecordingSource(), items[i]);
+		}
+		Scraper scraper = builder.build();
+		scraper.scrape();
+
+		for (SimpleThreadExtractingItem item : items)
+		{
+			Assert.assertEquals("text", item.value); //$NON-NLS-1$
+		}
+		for (String name : FetchRecordingSource.threadNames)
+		{
+			Assert.assertTrue(name.startsWith("PipelineStage-Fetch")); //$NON-NLS-1$
+		}
+		Assert.assertTrue(ThreadNameExtractor.threadNames.size() <= 2);
+		for (String name : ThreadNameExtractor.threadNames)
+		{
+			Assert.assertTrue(name.startsWith("PipelineStage-Bind")); //$NON-NLS-1$
+		}
+
+		List<StageMetrics> metrics = scraper.getStageMetrics();
+		Assert.assertEquals(2, metrics.size());
+		Assert.assertEquals("Fetch", metrics.get(0).getName()); //$NON-NLS-1$
+		Assert.assertEquals(8, metrics.get(0).getParallelism());
+		Assert.assertEquals("Bind", metrics.get(1).getName()); //$NON-NLS-1$
+		Assert.assertTrue(metrics.get(1).getMaxQueueDepth() <= 4);
+		Assert.assertEquals(0, metrics.get(1).getQueueDepth());
+		Assert.assertEquals(PARALLELISM,
+				metrics.get(1).getCompletedTaskCount());
+	}
+
+	/** Tests that a failure of the bind stage cancels the fetch stage. */
+	@Test
+	public void testStagedBindFailureCancelsFetch() throws Exception
+	{
+		SlowFetchSource.fetched.set(0);
+		ScraperBuilder builder = Scraper.builder().setStages(2, 2, 4);
+		builder.add(ScraperSource.fromHtml("<a>1</a><a>2</a>"), //$NON-NLS-1$
+				new AmbiguousItem());
+		for (int i = 0; i < PARALLELISM; i++)
+		{
+			builder.add(new SlowFetchSource(), new SimpleThreadExtractingItem());
+		}
+
+		try
+		{
+			builder.build().scrape();
+			Assert.fail();
+		}
+		catch (ScraperException e)
+		{
+			Assert.assertTrue(e.getMessage().contains("more than one")); //$NON-NLS-1$
+		}
+		Assert.assertTrue(SlowFetchSource.fetched.get() < PARALLELISM);
+	}
+
+	/**
+	 * Tests that nested scrapes of a staged scraper are scheduled within the
+	 * politeness limits on the fetch stage.
+	 */
+	@Test
+	public void testStagedNestedPoliteness() throws Exception
+	{
+		HostSource.reset();
+		ThreadNameExtractor.threadNames.clear();
+		PolitenessOptions options = new PolitenessOptions();
+		options.maxConnectionsPerHost = 1;
+		ScraperBuilder builder = Scraper.builder().setStages(4, 4, 4).setPoliteness(
+				options);
+		NestedHostItem[] items = new NestedHostItem[PARALLELISM];
+		for (int i = 0; i < items.length; i++)
+		{
+			items[i] = new NestedHostItem();
+			builder.add(dummySource(), items[i]);
+		}
+		builder.build().scrape();
+
+		for (NestedHostItem item : items)
+		{
+			Assert.assertEquals("text", item.nested.value); //$NON-NLS-1$
+		}
+		Assert.assertEquals(1, HostSource.maxPerHost.get());
+		for (String name : ThreadNameExtractor.threadNames)
+		{
+			Assert.assertTrue(name.startsWith("PipelineStage-Fetch")); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Tests that scrapes of a host are limited while other hosts are scraped
+	 * concurrently.
+	 */
+	@Test
+	public void testPoliteness() throws Exception
+	{
+		HostSource.reset();
+		PolitenessOptions options = new PolitenessOptions();
+		options.maxConnectionsPerHost = 1;
+		ScraperBuilder builder = Scraper.builder().setParallelism(PARALLELISM).setPoliteness(
+				options);
+		SimpleThreadExtractingItem[] items = new SimpleThreadExtractingItem[4 * PARALLELISM];
+		for (int i = 0; i < items.length; i++)
+		{
+			items[i] = new SimpleThreadExtractingItem();
+			builder.add(new HostSource("host" + i % 2), items[i]); //$NON-NLS-1$
+		}
+		builder.build().scrape();
+
+		for (SimpleThreadExtractingItem item : items)
+		{
+			Assert.assertEquals("text", item.value); //$NON-NLS-1$
+		}
+		Assert.assertEquals(1, HostSource.maxPerHost.get());
+		Assert.assertEquals(2, HostSource.maxOverall.get());
+	}
+
+	/**
+	 * Tests that politeness limits of nested scrapers do not limit the
+	 * executor of the outer scraper.
+	 */
+	@Test
+	public void testNestedPolitenessIgnored() throws Exception
+	{
+		HostSource.reset();
+		ScraperBuilder builder = Scraper.builder().setParallelism(8);
+		PoliteNestedItem[] items = new PoliteNestedItem[PARALLELISM];
+		for (int i = 0; i < items.length; i++)
+		{
+			items[i] = new PoliteNestedItem();
+			builder.add(dummySource(), items[i]);
+		}
+		builder.build().scrape();
+
+		for (PoliteNestedItem item : items)
+		{
+			Assert.assertEquals("text", item.nested.value); //$NON-NLS-1$
+		}
+		Assert.assertTrue(HostSource.maxPerHost.get() > 1);
+	}
+
+	/** Tests that politeness limits cannot be combined with work stealing. */
+	@Test(expected = IllegalStateException.class)
+	public void testPolitenessWithWorkStealing()
+	{
+		Scraper.builder().setWorkStealing().setPoliteness(
+				new PolitenessOptions()).build();
+	}
+
+	/**
+	 * Tests that lazily added targets are pulled only while the in-flight
+	 * window is not exhausted.
+	 */
+	@Test
+	public void testLazyIntake() throws Exception
+	{
+		final int window = 4;
+		final AtomicInteger pulled = new AtomicInteger();
+		final AtomicInteger maxPending = new AtomicInteger();
+		final List<CountingItem> items = Collections.synchronizedList(new ArrayList<CountingItem>());
+		CountingConverter.scraped.set(0);
+
+		Iterator<CountingItem> iterator = new Iterator<CountingItem>()
+		{
+			@Override
+			public boolean hasNext()
+			{
+				return pulled.get() < PARALLELISM * 8;
+			}
+
+			@Override
+			public CountingItem next()
+			{
+				int pending = pulled.incrementAndGet()
+						- CountingConverter.scraped.get();
+				maxPending.set(Math.max(maxPending.get(), pending));
+				CountingItem item = new CountingItem();
+				items.add(item);
+				return item;
+			}
+		};
+
+		Scraper.builder().setParallelism(2).setMaxInFlight(window).add(
+				iterator).build().scrape();
+
+		Assert.assertEquals(PARALLELISM * 8, items.size());
+		for (CountingItem item : items)
+		{
+			Assert.assertEquals("text", item.value); //$NON-NLS-1$
+		}
+		Assert.assertTrue(maxPending.get() <= window);
+	}
+
+	/**
+	 * Tests that asynchronous scrapes return before lazily added targets are
+	 * pulled beyond the in-flight window.
+	 */
+	@Test
+	public void testLazyIntakeAsync() throws Exception
+	{
+		final List<ConcurrencyTrackingItem> items = Collections.synchronizedList(new ArrayList<ConcurrencyTrackingItem>());
+		Iterator<ConcurrencyTrackingItem> iterator = new Iterator<ConcurrencyTrackingItem>()
+		{
+			@Override
+			public boolean hasNext()
+			{
+				return items.size() < 100;
+			}
+
+			@Override
+			public ConcurrencyTrackingItem next()
+			{
+				ConcurrencyTrackingItem item = new ConcurrencyTrackingItem();
+				items.add(item);
+				return item;
+			}
+		};
+
+		ScrapeFuture future = Scraper.builder().setParallelism(2).setMaxInFlight(
+				4).add(iterator).build().scrapeAsync();
+		Assert.assertTrue(items.size() < 100);
+
+		future.get();
+		Assert.assertEquals(100, items.size());
+		for (ConcurrencyTrackingItem item : items)
+		{
+			Assert.assertEquals("text", item.value); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Tests that nested scrapes add lazy targets without blocking a single
+	 * thread pool and the parent target waits for them.
+	 */
+	@Test(timeout = 10000)
+	public void testNestedLazyIntake() throws Exception
+	{
+		NestedLazyConverter.items.clear();
+		ScrapeFuture future = Scraper.builder().setParallelism(1).add(
+				dummySource(),
+				new NestedLazyItem()).build().scrapeAsync();
+
+		future.getTargets().get(0).get();
+		Assert.assertEquals(8, NestedLazyConverter.items.size());
+		for (CountingItem item : NestedLazyConverter.items)
+		{
+			Assert.assertEquals("text", item.value); //$NON-NLS-1$
+		}
+		future.get();
+	}
+
+	/** Tests lazily scraping a stream of targets. */
+	@Test
+	public void testLazyStreamIntake() throws Exception
+	{
+		List<CountingItem> items = new ArrayList<CountingItem>();
+		for (int i = 0; i < PARALLELISM; i++)
+		{
+			items.add(new CountingItem());
+		}
+
+		Scraper.builder().add(items.stream()).build().scrape();
+
+		for (CountingItem item : items)
+		{
+			Assert.assertEquals("text", item.value); //$NON-NLS-1$
+		}
+	}
+
 	/** Asserts that scraping N items will yield M threads. */
 	private <T extends ScraperSourceProvider> T[] assertScrapingNItemsYieldsMThreads(
 			T comparee, Class<T> clazz, int n, int m) throws Exception
@@ -439,6 +922,395 @@ public class ThreadingTest
 		}
 	}
 
+	/** Source recording the threads fetching it. */
+	private static class FetchRecordingSource extends ScraperSource
+	{
+		/** The names of threads that fetched a source. */
+		private static final Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+
+		/** {@inheritDoc} */
+		@Override
+		public Element getElement() throws ScraperException
+		{
+			return dummySource().getElement();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public ScraperSource fetch() throws ScraperException
+		{
+			threadNames.add(Thread.currentThread().getName());
+			return dummySource();
+		}
+	}
+
+	/** Source that is fetched slowly. */
+	private static class SlowFetchSource extends ScraperSource
+	{
+		/** The amount of finished fetches. */
+		private static final AtomicInteger fetched = new AtomicInteger();
+
+		/** {@inheritDoc} */
+		@Override
+		public Element getElement() throws ScraperException
+		{
+			return dummySource().getElement();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public ScraperSource fetch() throws ScraperException
+		{
+			try
+			{
+				Thread.sleep(50);
+			}
+			catch (InterruptedException e)
+			{
+				throw new ScraperException("Interrupted", e); //$NON-NLS-1$
+			}
+			fetched.incrementAndGet();
+			return dummySource();
+		}
+	}
+
+	/** Source of a host that records the concurrent scrapes. */
+	private static class HostSource extends ScraperSource
+	{
+		/** The running scrapes per host. */
+		private static final HashMap<String, AtomicInteger> running = new HashMap<String, AtomicInteger>();
+
+		/** The running scrapes of all hosts. */
+		private static final AtomicInteger overall = new AtomicInteger();
+
+		/** The maximum of concurrent scrapes of a host. */
+		private static final AtomicInteger maxPerHost = new AtomicInteger();
+
+		/** The maximum of concurrent scrapes of all hosts. */
+		private static final AtomicInteger maxOverall = new AtomicInteger();
+
+		/** The host of the source. */
+		private final String host;
+
+		/** Constructor. */
+		private HostSource(String host)
+		{
+			this.host = host;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Element getElement() throws ScraperException
+		{
+			AtomicInteger counter;
+			synchronized (running)
+			{
+				counter = running.get(this.host);
+				if (counter == null)
+				{
+					counter = new AtomicInteger();
+					running.put(this.host, counter);
+				}
+			}
+			updateMax(maxPerHost, counter.incrementAndGet());
+			updateMax(maxOverall, overall.incrementAndGet());
+			try
+			{
+				Thread.sleep(20);
+			}
+			catch (InterruptedException e)
+			{
+				throw new ScraperException("Interrupted", e); //$NON-NLS-1$
+			}
+			finally
+			{
+				overall.decrementAndGet();
+				counter.decrementAndGet();
+			}
+			return dummySource().getElement();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String getHost()
+		{
+			return this.host;
+		}
+
+		/** Resets the recorded scrapes. */
+		private static void reset()
+		{
+			synchronized (running)
+			{
+				running.clear();
+			}
+			overall.set(0);
+			maxPerHost.set(0);
+			maxOverall.set(0);
+		}
+
+		/** Raises the maximum to the current value if exceeding it. */
+		private static void updateMax(AtomicInteger max, int current)
+		{
+			int previous;
+			do
+			{
+				previous = max.get();
+			}
+			while (current > previous && !max.compareAndSet(previous, current));
+		}
+	}
+
+	/** Item with a nested scrape of a host. */
+	public static class NestedHostItem
+	{
+		/** The item scraped from the host. */
+		@Scrape(value = ":root", converter = NestedHostConverter.class)
+		public SimpleThreadExtractingItem nested;
+	}
+
+	/** Converter scraping an item from a host in a nested staged scrape. */
+	public static class NestedHostConverter implements Converter
+	{
+		/** {@inheritDoc} */
+		@Override
+		public Object convert(ScraperContext context) throws ScraperException
+		{
+			SimpleThreadExtractingItem item = new SimpleThreadExtractingItem();
+			Scraper.builder().setStages(2, 2, 4).add(
+					new HostSource("nested"), //$NON-NLS-1$
+					item).build().scrape();
+			return item;
+		}
+	}
+
+	/** Item counting its scrapes. */
+	public static class CountingItem implements ScraperSourceProvider
+	{
+		/** Dummy attribute that causes the CountingConverter to be called. */
+		@Scrape(value = ":root", converter = CountingConverter.class)
+		public String value;
+
+		/** {@inheritDoc} */
+		@Override
+		public ScraperSource getSource()
+		{
+			return dummySource();
+		}
+	}
+
+	/** Dummy converter counting its conversions. */
+	public static class CountingConverter implements Converter
+	{
+		/** The amount of conversions. */
+		public static final AtomicInteger scraped = new AtomicInteger();
+
+		/** {@inheritDoc} */
+		@Override
+		public Object convert(ScraperContext context) throws ScraperException
+		{
+			scraped.incrementAndGet();
+			return context.getSourceText();
+		}
+	}
+
+	/** Item with a nested scrape of a host with politeness limits. */
+	public static class PoliteNestedItem
+	{
+		/** The item scraped from the host. */
+		@Scrape(value = ":root", converter = PoliteNestedConverter.class)
+		public SimpleThreadExtractingItem nested;
+	}
+
+	/**
+	 * Converter scraping an item from a host in a nested scrape with
+	 * politeness limits.
+	 */
+	public static class PoliteNestedConverter implements Converter
+	{
+		/** {@inheritDoc} */
+		@Override
+		public Object convert(ScraperContext context) throws ScraperException
+		{
+			PolitenessOptions options = new PolitenessOptions();
+			options.maxConnectionsPerHost = 1;
+			SimpleThreadExtractingItem item = new SimpleThreadExtractingItem();
+			Scraper.builder().setPoliteness(options).add(
+					new HostSource("polite"), //$NON-NLS-1$
+					item).build().scrape();
+			return item;
+		}
+	}
+
+	/** Item with a nested scrape of lazily added targets. */
+	public static class NestedLazyItem
+	{
+		/** Dummy attribute that causes the NestedLazyConverter to be called. */
+		@Scrape(value = ":root", converter = NestedLazyConverter.class)
+		public String value;
+	}
+
+	/** Converter scraping lazily added targets in a nested scrape. */
+	public static class NestedLazyConverter implements Converter
+	{
+		/** The items of the nested scrapes. */
+		public static final List<CountingItem> items = Collections.synchronizedList(new ArrayList<CountingItem>());
+
+		/** {@inheritDoc} */
+		@Override
+		public Object convert(ScraperContext context) throws ScraperException
+		{
+			List<CountingItem> nested = new ArrayList<CountingItem>();
+			for (int i = 0; i < 8; i++)
+			{
+				nested.add(new CountingItem());
+			}
+			items.addAll(nested);
+			Scraper.builder().setMaxInFlight(1).add(nested.iterator()).build().scrape();
+			return context.getSourceText();
+		}
+	}
+
+	/** Item with a query matching several elements for a single value. */
+	public static class AmbiguousItem
+	{
+		/** Field failing to be scraped. */
+		@Scrape("a")
+		public String value;
+	}
+
+	/** Item that is scraped slowly. */
+	public static class SlowItem
+	{
+		/** Dummy attribute that causes the SlowConverter to be called. */
+		@Scrape(value = ":root", converter = SlowConverter.class)
+		public String value;
+	}
+
+	/** Dummy converter that takes some time. */
+	public static class SlowConverter implements Converter
+	{
+		/** The amount of started conversions. */
+		public static final AtomicInteger started = new AtomicInteger();
+
+		/** {@inheritDoc} */
+		@Override
+		public Object convert(ScraperContext context) throws ScraperException
+		{
+			started.incrementAndGet();
+			try
+			{
+				Thread.sleep(50);
+			}
+			catch (InterruptedException e)
+			{
+				throw new ScraperException("Interrupted", e); //$NON-NLS-1$
+			}
+			return context.getSourceText();
+		}
+	}
+
+	/** Item to store scraped data in. */
+	public static class ConcurrencyTrackingItem implements
+			ScraperSourceProvider
+	{
+		/** Dummy attribute that causes the ConcurrencyTracker to be called. */
+		@Scrape(value = ":root", converter = ConcurrencyTracker.class)
+		public String value;
+
+		/** {@inheritDoc} */
+		@Override
+		public ScraperSource getSource()
+		{
+			return dummySource();
+		}
+	}
+
+	/** Item to store scraped data in. */
+	public static class JoinCheckingItem implements ScraperSourceProvider
+	{
+		/** Deep scraped items. */
+		@Scrape(value = ":root n", converter = JoinCheckingConverter.class)
+		public SimpleThreadExtractingItem[] deepScraped;
+
+		/** {@inheritDoc} */
+		@Override
+		public ScraperSource getSource()
+		{
+			return ScraperSource.fromHtml("<r>" //$NON-NLS-1$
+					+ "<n>a</n>" //$NON-NLS-1$
+					+ "<n>b</n>" //$NON-NLS-1$
+					+ "<n>c</n>" //$NON-NLS-1$
+					+ "</r>"); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Deep scrape converter that counts nested scrapes that are not complete
+	 * after conversion.
+	 */
+	public static class JoinCheckingConverter implements Converter
+	{
+		/** The amount of incomplete nested scrapes. */
+		public static final AtomicInteger incomplete = new AtomicInteger();
+
+		/** {@inheritDoc} */
+		@Override
+		public Object convert(ScraperContext context) throws ScraperException
+		{
+			SimpleThreadExtractingItem item = (SimpleThreadExtractingItem) new DeepScrapeConverter().convert(context);
+			if (item.value == null)
+			{
+				incomplete.incrementAndGet();
+			}
+			return item;
+		}
+	}
+
+	/**
+	 * Dummy converter that tracks the maximum amount of concurrent
+	 * conversions.
+	 */
+	public static class ConcurrencyTracker implements Converter
+	{
+		/** The amount of currently running conversions. */
+		private static final AtomicInteger concurrency = new AtomicInteger();
+
+		/** The maximum amount of concurrently running conversions. */
+		public static final AtomicInteger maxConcurrency = new AtomicInteger();
+
+		/** Resets the counters. */
+		public static void reset()
+		{
+			concurrency.set(0);
+			maxConcurrency.set(0);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Object convert(ScraperContext context) throws ScraperException
+		{
+			int current = concurrency.incrementAndGet();
+			int max;
+			do
+			{
+				max = maxConcurrency.get();
+			}
+			while (current > max && !maxConcurrency.compareAndSet(max, current));
+
+			try
+			{
+				Thread.sleep(5);
+			}
+			catch (InterruptedException e)
+			{
+				throw new ScraperException("Interrupted", e); //$NON-NLS-1$
+			}
+			concurrency.decrementAndGet();
+			return context.getSourceText();
+		}
+	}
+
 	/**
 	 * Dummy converter stores the name of the current thread in a
 	 * {@link HashMap}.
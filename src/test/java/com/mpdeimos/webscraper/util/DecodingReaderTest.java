@@ -0,0 +1,91 @@
+package com.mpdeimos.webscraper.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link DecodingReader}.
+ *
+ * @author mpdeimos
+ */
+public class DecodingReaderTest
+{
+	/** The charset of the tests. */
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	/**
+	 * Tests that the bytes are decoded in chunks while reading, so the whole
+	 * text is never on the heap.
+	 */
+	@Test
+	public void testDecodesLazily() throws IOException
+	{
+		ByteBuffer bytes = ByteBuffer.wrap(new byte[1 << 20]);
+		DecodingReader reader = new DecodingReader(bytes, UTF_8);
+		Assert.assertEquals(0, bytes.position());
+
+		char[] buffer = new char[16];
+		Assert.assertEquals(16, reader.read(buffer));
+		Assert.assertTrue(
+				String.valueOf(bytes.position()),
+				bytes.position() <= 8192);
+
+		long read = 16;
+		int count;
+		while ((count = reader.read(buffer)) != -1)
+		{
+			read += count;
+		}
+		Assert.assertEquals(1 << 20, read);
+		Assert.assertFalse(bytes.hasRemaining());
+	}
+
+	/**
+	 * Tests that characters spanning chunks and single character reads are
+	 * decoded correctly.
+	 */
+	@Test
+	public void testDecodesAcrossChunks() throws IOException
+	{
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 10000; i++)
+		{
+			text.append("\u00fcber \u20ac\ud83d\ude00").append(i); //$NON-NLS-1$
+		}
+
+		for (String charset : new String[] { "UTF-8", "UTF-16", "UTF-32" }) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		{
+			DecodingReader reader = new DecodingReader(
+					ByteBuffer.wrap(text.toString().getBytes(charset)),
+					Charset.forName(charset));
+			StringBuilder decoded = new StringBuilder();
+			int c;
+			while ((c = reader.read()) != -1)
+			{
+				decoded.append((char) c);
+			}
+			Assert.assertEquals(text.toString(), decoded.toString());
+		}
+	}
+
+	/** Tests that empty buffers and malformed input are read. */
+	@Test
+	public void testEmptyAndMalformed() throws IOException
+	{
+		Assert.assertEquals(-1, new DecodingReader(
+				ByteBuffer.allocate(0),
+				UTF_8).read());
+
+		DecodingReader reader = new DecodingReader(
+				ByteBuffer.wrap(new byte[] { 'a', (byte) 0xff, 'b' }),
+				UTF_8);
+		char[] buffer = new char[4];
+		Assert.assertEquals(3, reader.read(buffer));
+		Assert.assertEquals("a\ufffdb", new String(buffer, 0, 3)); //$NON-NLS-1$
+		Assert.assertEquals(-1, reader.read(buffer));
+	}
+}
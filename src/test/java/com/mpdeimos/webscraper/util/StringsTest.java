@@ -0,0 +1,58 @@
+package com.mpdeimos.webscraper.util;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link Strings}.
+ * 
+ * @author mpdeimos
+ */
+public class StringsTest
+{
+	/** Tests whitespace normalization of simple inputs. */
+	@Test
+	public void testNormalizeWhitespace()
+	{
+		Assert.assertEquals("", Strings.normalizeWhitespace("")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals("", Strings.normalizeWhitespace(" \u00a0\t ")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals("a b", Strings.normalizeWhitespace("a b")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals("a b c", //$NON-NLS-1$
+				Strings.normalizeWhitespace("\n a\u00a0\u00a0b \r\n c\t")); //$NON-NLS-1$
+	}
+
+	/** Tests that unchanged inputs are not copied. */
+	@Test
+	public void testNormalizeWhitespaceReturnsInput()
+	{
+		String input = "no change"; //$NON-NLS-1$
+		Assert.assertSame(input, Strings.normalizeWhitespace(input));
+	}
+
+	/**
+	 * Tests whitespace normalization of random inputs against the regular
+	 * expression based reference implementation.
+	 */
+	@Test
+	public void testNormalizeWhitespaceEqualsReference()
+	{
+		char[] alphabet = { 'a', 'b', ' ', '\t', '\n', '\r', '\f', '\u000B',
+				'\u00a0', '\u0001', '\u2003' };
+		Random random = new Random(42);
+		for (int i = 0; i < 10000; i++)
+		{
+			char[] input = new char[random.nextInt(12)];
+			for (int j = 0; j < input.length; j++)
+			{
+				input[j] = alphabet[random.nextInt(alphabet.length)];
+			}
+			String text = new String(input);
+
+			String expected = text.replace(Strings.NONBREAKING_SPACE,
+					Strings.SPACE).replaceAll("\\s+", Strings.SPACE).trim(); //$NON-NLS-1$
+			Assert.assertEquals(expected, Strings.normalizeWhitespace(text));
+		}
+	}
+}